@@ -0,0 +1,100 @@
+package com.dp.controller;
+
+import com.dp.dto.Result;
+import com.dp.utils.cache.CacheInvalidator;
+import com.dp.utils.cache.CacheRebuildExecutor;
+import com.dp.utils.cache.HotKeyManager;
+import com.dp.utils.cache.LocalCacheManager;
+import com.dp.utils.cache.RedisCacheAspect;
+import com.dp.utils.index.ShopGeoRedisSync;
+import com.dp.utils.index.ShopSuggester;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * 缓存监控
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private LocalCacheManager localCacheManager;
+
+    @Resource
+    private CacheRebuildExecutor cacheRebuildExecutor;
+
+    @Resource
+    private HotKeyManager hotKeyManager;
+
+    @Resource
+    private RedisCacheAspect redisCacheAspect;
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
+    @Resource
+    private ShopGeoRedisSync shopGeoRedisSync;
+
+    @Resource
+    private ShopSuggester shopSuggester;
+
+    /**
+     * 查询各个缓存的各级命中统计
+     */
+    @GetMapping("/stats")
+    public Result queryCacheStats() {
+        return Result.ok(localCacheManager.stats());
+    }
+
+    /**
+     * 查询缓存重建线程池的队列深度、重建耗时和丢弃数
+     */
+    @GetMapping("/rebuild-stats")
+    public Result queryRebuildStats() {
+        return Result.ok(cacheRebuildExecutor.stats());
+    }
+
+    /**
+     * 查询当前的热点key及其在滑动窗口内的访问次数
+     */
+    @GetMapping("/hot-keys")
+    public Result queryHotKeys() {
+        return Result.ok(hotKeyManager.hotKeys());
+    }
+
+    /**
+     * 查询注解缓存（RedisCacheable）的调用次数、命中率和平均耗时
+     */
+    @GetMapping("/annotation-stats")
+    public Result queryAnnotationStats() {
+        return Result.ok(redisCacheAspect.stats());
+    }
+
+    /**
+     * 查询缓存删除的延迟、各阶段失败次数和重试队列长度
+     */
+    @GetMapping("/invalidation-stats")
+    public Result queryInvalidationStats() {
+        return Result.ok(cacheInvalidator.stats());
+    }
+
+    /**
+     * 查询商铺GEO索引的增量同步失败次数和最近一次全量对账的结果
+     */
+    @GetMapping("/geo-stats")
+    public Result queryGeoStats() {
+        return Result.ok(shopGeoRedisSync.stats());
+    }
+
+    /**
+     * 查询商铺联想词快照的条目数、构建耗时和每个商铺的内存占用
+     */
+    @GetMapping("/suggest-stats")
+    public Result querySuggestStats() {
+        return Result.ok(shopSuggester.stats());
+    }
+}
@@ -4,13 +4,19 @@ import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.dp.dto.NearbyShopQuery;
 import com.dp.dto.Result;
 import com.dp.entity.Shop;
 import com.dp.service.ShopService;
+import com.dp.utils.cache.ResponseBodyWriter;
+import com.dp.utils.cache.SerializedBody;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @Slf4j
@@ -21,15 +27,34 @@ public class ShopController {
     @Autowired
     private ShopService shopService;
 
+    @Autowired
+    private ResponseBodyWriter responseBodyWriter;
+
     /**
      * 根据id查询商铺信息
      *
+     * 热点商铺直接输出本地缓存中序列化好的响应体，其他商铺查询后序列化输出，都支持If-None-Match返回304
+     *
      * @param id 商铺Id
-     * @return 商铺详情数据
      */
     @GetMapping("/{id}")
-    public Result queryShopById(@PathVariable("id") Long id) {
-        return shopService.queryById(id);
+    public void queryShopById(@PathVariable("id") Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 0. 记录访问（热点探测），包括直接输出响应体的请求
+        shopService.recordAccess(id);
+        // 1. 快速路径：热点商铺直接输出序列化好的响应体
+        SerializedBody body = shopService.queryHotShopBody(id);
+        if (body != null) {
+            responseBodyWriter.write(body, request, response);
+            return;
+        }
+        // 2. 查询商铺（本地缓存 -> redis -> 数据库）
+        Result result = shopService.queryById(id);
+        if (!Boolean.TRUE.equals(result.getSuccess())) {
+            responseBodyWriter.write(result, response);
+            return;
+        }
+        // 3. 序列化后输出
+        responseBodyWriter.write(responseBodyWriter.serialize(result), request, response);
     }
 
     /**
@@ -51,11 +76,19 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // TODO：还要写入redis的geo中
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        // 写入数据库和布隆过滤器，事务提交后写入redis的geo中，返回店铺id
+        return shopService.saveShop(shop);
+    }
+
+    /**
+     * 删除商铺
+     *
+     * @param id 商铺id
+     */
+    @DeleteMapping("/{id}")
+    public Result deleteShop(@PathVariable("id") Long id) {
+        // 删除数据库，事务提交后删除缓存和geo中的商铺
+        return shopService.deleteShop(id);
     }
 
 
@@ -77,6 +110,37 @@ public class ShopController {
         return shopService.queryShopByType(typeId, current, x, y);
     }
 
+    /**
+     * 附近商铺多条件查询：按人均价格、评分、是否营业筛选，按距离、评分、销量综合排序
+     *
+     * @param query 查询条件，typeId、x、y必填
+     * @return 商铺列表
+     */
+    @GetMapping("/nearby")
+    public Result queryNearbyShops(NearbyShopQuery query) {
+        return shopService.queryNearbyShops(query);
+    }
+
+    /**
+     * 根据商铺类型和坐标游标分页查询附近商铺，第一页生成结果快照，后续翻页带上返回的cursor
+     *
+     * @param typeId  商铺类型
+     * @param cursor  上一页返回的游标（第一页不传）
+     * @param current 页码
+     * @param x       当前所在位置经度
+     * @param y       当前所在位置纬度
+     * @return 商铺列表、游标和是否还有下一页
+     */
+    @GetMapping("/of/type/scroll")
+    public Result queryShopByTypeWithCursor(
+            @RequestParam("typeId") Integer typeId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "current", defaultValue = "1") Integer current,
+            @RequestParam("x") Double x,
+            @RequestParam("y") Double y) {
+        return shopService.queryShopByTypeWithCursor(typeId, cursor, current, x, y);
+    }
+
     /**
      * 根据商铺名称关键字分页查询商铺信息
      *
@@ -90,5 +154,18 @@ public class ShopController {
             @RequestParam(value = "current", defaultValue = "1") Integer current) {
         return shopService.queryShopByName(name, current);
     }
-}
 
+    /**
+     * 商铺名称、商圈的前缀联想，按销量和评分排序
+     *
+     * @param prefix 输入的前缀
+     * @param limit  返回的最大条数
+     * @return 联想词列表
+     */
+    @GetMapping("/suggest")
+    public Result suggest(
+            @RequestParam("prefix") String prefix,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return shopService.suggest(prefix, limit);
+    }
+}
@@ -1,13 +1,17 @@
 package com.dp.controller;
 
 
-import com.dp.dto.Result;
 import com.dp.service.ShopTypeService;
+import com.dp.utils.cache.ResponseBodyWriter;
+import com.dp.utils.cache.ShopTypeSnapshot;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/shop-type")
@@ -15,8 +19,15 @@ public class ShopTypeController {
     @Resource
     private ShopTypeService typeService;
 
+    @Resource
+    private ResponseBodyWriter responseBodyWriter;
+
+    /**
+     * 直接输出内存快照中预先序列化好的响应体（支持If-None-Match返回304），不访问Redis和数据库
+     */
     @GetMapping("list")
-    public Result queryTypeList() {
-        return typeService.getList();
+    public void queryTypeList(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ShopTypeSnapshot snapshot = typeService.getSnapshot();
+        responseBodyWriter.write(snapshot.getEtag(), snapshot.getBody(), request, response);
     }
 }
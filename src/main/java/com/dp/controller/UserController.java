@@ -1,10 +1,8 @@
 package com.dp.controller;
 
-import cn.hutool.core.bean.BeanUtil;
 import com.dp.dto.LoginFormDTO;
 import com.dp.dto.Result;
 import com.dp.dto.UserDTO;
-import com.dp.entity.User;
 import com.dp.entity.UserInfo;
 import com.dp.service.UserInfoService;
 import com.dp.service.UserService;
@@ -83,12 +81,7 @@ public class UserController {
 
     @GetMapping("/{id}")
     public Result queryUserById(@PathVariable("id") Long userId) {
-        User user = userService.getById(userId);
-        if (user == null) {
-            return Result.ok();
-        }
-        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
-        return Result.ok(userDTO);
+        return userService.queryUserById(userId);
     }
 
     @PostMapping("/sign")
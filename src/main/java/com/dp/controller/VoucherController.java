@@ -20,7 +20,7 @@ public class VoucherController {
      */
     @PostMapping
     public Result addVoucher(@RequestBody Voucher voucher) {
-        voucherService.save(voucher);
+        voucherService.addVoucher(voucher);
         return Result.ok(voucher.getId());
     }
 
@@ -35,6 +35,16 @@ public class VoucherController {
         return Result.ok(voucher.getId());
     }
 
+    /**
+     * 修改秒杀券，同时重建redis中的秒杀券信息
+     * @param voucher 优惠券信息，未传的字段不修改
+     */
+    @PutMapping("seckill")
+    public Result updateSeckillVoucher(@RequestBody Voucher voucher) {
+        voucherService.updateSeckillVoucher(voucher);
+        return Result.ok();
+    }
+
     /**
      * 查询店铺的优惠券列表
      * @param shopId 店铺id
@@ -0,0 +1,20 @@
+package com.dp.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 返回附近商铺游标分页的结果
+ * cursor：本次搜索结果快照的游标，后续翻页时带上，快照有效期内结果顺序不变
+ * current：本次返回的页码
+ * hasMore：是否还有下一页
+ * list：返回的分页结果
+ */
+@Data
+public class GeoScrollResult {
+    private List<?> list;
+    private String cursor;
+    private Integer current;
+    private Boolean hasMore;
+}
@@ -0,0 +1,21 @@
+package com.dp.dto;
+
+import lombok.Data;
+
+/**
+ * 附近商铺多条件查询的参数
+ * typeId、x、y必填；radius为搜索半径（米），不传时默认5000；
+ * minPrice、maxPrice为人均价格范围，minScore为最低评分（乘10，与数据库一致），openNow为是否只看正在营业的商铺
+ */
+@Data
+public class NearbyShopQuery {
+    private Long typeId;
+    private Double x;
+    private Double y;
+    private Double radius;
+    private Long minPrice;
+    private Long maxPrice;
+    private Integer minScore;
+    private Boolean openNow;
+    private Integer current = 1;
+}
@@ -1,15 +1,31 @@
 package com.dp.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.dp.dto.NearbyShopQuery;
 import com.dp.dto.Result;
 import com.dp.entity.Shop;
+import com.dp.utils.cache.SerializedBody;
 
 public interface ShopService extends IService<Shop> {
     Result queryById(Long id);
 
+    void recordAccess(Long id);
+
+    SerializedBody queryHotShopBody(Long id);
+
     Result update(Shop shop);
 
+    Result saveShop(Shop shop);
+
+    Result deleteShop(Long id);
+
     Result queryShopByName(String name, Integer current);
 
+    Result suggest(String prefix, Integer limit);
+
     Result queryShopByType(Integer typeId, Integer current, Double x, Double y);
+
+    Result queryNearbyShops(NearbyShopQuery query);
+
+    Result queryShopByTypeWithCursor(Integer typeId, String cursor, Integer current, Double x, Double y);
 }
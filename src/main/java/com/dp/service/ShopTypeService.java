@@ -3,8 +3,11 @@ package com.dp.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.dp.dto.Result;
 import com.dp.entity.ShopType;
+import com.dp.utils.cache.ShopTypeSnapshot;
 
 public interface ShopTypeService extends IService<ShopType> {
 
     Result getList();
+
+    ShopTypeSnapshot getSnapshot();
 }
@@ -21,4 +21,6 @@ public interface UserService extends IService<User> {
     Result sign();
 
     Result signCount();
+
+    Result queryUserById(Long userId);
 }
@@ -6,6 +6,8 @@ import com.dp.dto.Result;
 import com.dp.entity.SeckillVoucher;
 import com.dp.entity.VoucherOrder;
 
+import java.util.List;
+
 public interface VoucherOrderService extends IService<VoucherOrder> {
 
     Result seckillVoucher(Long voucherId);
@@ -13,4 +15,9 @@ public interface VoucherOrderService extends IService<VoucherOrder> {
     Result createVoucherOrder(Long voucherId);
 
     void createVoucherOrder(VoucherOrder voucherOrder);
+
+    /**
+     * @return 因数据库库存不足没有写入的订单
+     */
+    List<VoucherOrder> createVoucherOrders(List<VoucherOrder> voucherOrders);
 }
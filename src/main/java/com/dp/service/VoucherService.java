@@ -6,8 +6,14 @@ import com.dp.entity.Voucher;
 
 public interface VoucherService extends IService<Voucher> {
 
+    void addVoucher(Voucher voucher);
+
     void addSeckillVoucher(Voucher voucher);
 
+    void updateSeckillVoucher(Voucher voucher);
+
+    int migrateLegacySeckillVouchers();
+
     Result queryVoucherOfShop(Long shopId);
 }
 
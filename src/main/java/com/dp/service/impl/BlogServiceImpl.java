@@ -1,6 +1,7 @@
 package com.dp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
@@ -18,6 +19,7 @@ import com.dp.service.BlogService;
 import com.dp.service.FollowService;
 import com.dp.service.UserService;
 import com.dp.utils.UserHolder;
+import com.dp.utils.cache.IdBloomFilter;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.weaver.ast.Var;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -51,6 +53,9 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements Bl
     @Resource
     private FollowService followService;
 
+    @Resource
+    private IdBloomFilter idBloomFilter;
+
     @Override
     public Result queryHotBlog(Integer current) {
         Page<Blog> page = new Page<>(current, MAX_PAGE_SIZE);
@@ -73,6 +78,10 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements Bl
 
     @Override
     public Result queryBlogById(String id) {
+        // 0. 布隆过滤器判断id不存在，直接返回（解决缓存穿透）
+        if (!NumberUtil.isLong(id) || !idBloomFilter.mightContain(IdBloomFilter.BLOG, Long.valueOf(id))) {
+            return Result.fail("笔记不存在");
+        }
         // 1. 查询blog
         Blog blog = getById(id);
         if (blog == null) {
@@ -189,6 +198,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements Bl
         if (!success) {
             return Result.fail("发布失败");
         }
+        idBloomFilter.add(IdBloomFilter.BLOG, blog.getId());
         // 3. 查询笔记作者关注者（也可做Redis缓存中）
         LambdaQueryWrapper<Follow> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(Follow::getFollowUserId, userId);
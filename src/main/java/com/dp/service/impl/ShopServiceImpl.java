@@ -1,30 +1,52 @@
 package com.dp.service.impl;
 
+import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.dp.dto.GeoScrollResult;
+import com.dp.dto.NearbyShopQuery;
 import com.dp.dto.Result;
 import com.dp.entity.Shop;
 import com.dp.mapper.ShopMapper;
 import com.dp.service.ShopService;
-import com.dp.utils.redis.RedisData;
-import jodd.util.StringUtil;
+import com.dp.utils.cache.CacheInvalidateEvent;
+import com.dp.utils.cache.CacheRebuildExecutor;
+import com.dp.utils.cache.HotKeyDetector;
+import com.dp.utils.cache.HotKeyManager;
+import com.dp.utils.cache.IdBloomFilter;
+import com.dp.utils.cache.LocalCache;
+import com.dp.utils.cache.LocalCacheManager;
+import com.dp.utils.cache.ResponseBodyWriter;
+import com.dp.utils.cache.SerializedBody;
+import com.dp.utils.cache.SingleFlight;
+import com.dp.utils.codec.ValueCodec;
+import com.dp.utils.codec.ValueCodecs;
+import com.dp.utils.index.ShopChangeEvent;
+import com.dp.utils.index.ShopGeoIndex;
+import com.dp.utils.index.ShopNameIndex;
+import com.dp.utils.index.ShopNearbySearcher;
+import com.dp.utils.index.ShopSuggester;
+import com.dp.utils.redis.CacheRedisUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.domain.geo.GeoReference;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
@@ -37,17 +59,103 @@ import static com.dp.utils.redis.RedisConstants.*;
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements ShopService {
 
+    private static final String GEO_SOURCE_MEMORY = "memory";
+
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = new ThreadPoolExecutor(
-            10,
-            10,
-            0L,
-            TimeUnit.MILLISECONDS,
-            new LinkedBlockingDeque<>(300),
-            Executors.defaultThreadFactory(),
-            new ThreadPoolExecutor.DiscardOldestPolicy());
+    @Resource
+    private RedisTemplate<String, byte[]> bytesRedisTemplate;
+
+    @Resource
+    private LocalCacheManager localCacheManager;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private IdBloomFilter idBloomFilter;
+
+    @Resource
+    private CacheRedisUtil cacheRedisUtil;
+
+    @Resource
+    private HotKeyManager hotKeyManager;
+
+    @Resource
+    private CacheRebuildExecutor cacheRebuildExecutor;
+
+    @Resource
+    private ResponseBodyWriter responseBodyWriter;
+
+    @Value("${dianping.cache.shop.hot-threshold:200}")
+    private int shopHotThreshold;
+
+    @Value("${dianping.cache.codec:binary}")
+    private String cacheCodec;
+
+    @Value("${dianping.geo.source:memory}")
+    private String geoSource;
+
+    @Resource
+    private ShopGeoIndex shopGeoIndex;
+
+    @Resource
+    private ShopNearbySearcher shopNearbySearcher;
+
+    @Resource
+    private ShopNameIndex shopNameIndex;
+
+    @Resource
+    private ShopSuggester shopSuggester;
+
+    @Value("${dianping.cache.shop.local-max-size:10000}")
+    private long shopLocalMaxSize;
+
+    @Value("${dianping.cache.shop.local-ttl-seconds:60}")
+    private long shopLocalTtlSeconds;
+
+    /**
+     * 商铺本地缓存（L1），热点商铺同时保存序列化好的响应体，商铺更新时通过LocalCacheManager广播删除
+     */
+    private LocalCache<ShopEntry> shopLocalCache;
+
+    /**
+     * 商铺Redis缓存（互斥锁版本）的编解码器
+     */
+    private ValueCodec<Shop> shopCodec;
+
+    /**
+     * 商铺缓存重建的单飞加载
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * 商铺热点探测：热点商铺晋升到逻辑过期缓存，冷却后降级
+     */
+    private HotKeyDetector shopHotKeyDetector;
+
+    @PostConstruct
+    private void init() {
+        shopCodec = ValueCodecs.of(Shop.class, cacheCodec);
+        shopLocalCache = localCacheManager.create(SHOP_LOCAL_CACHE, shopLocalMaxSize, shopLocalTtlSeconds, TimeUnit.SECONDS);
+        shopHotKeyDetector = hotKeyManager.create(SHOP_LOCAL_CACHE, shopHotThreshold, new HotKeyDetector.Listener() {
+            @Override
+            public void onPromote(String key) {
+                promoteHotShop(Long.valueOf(key));
+            }
+
+            @Override
+            public void onDemote(String key) {
+                stringRedisTemplate.delete(CACHE_SHOP_HOT_KEY + key);
+                // 降级后不再保存响应体
+                ShopEntry entry = shopLocalCache.get(key);
+                if (entry != null) {
+                    entry.body = null;
+                }
+            }
+        });
+    }
 
     /**
      * 解决缓存击穿问题
@@ -69,146 +177,189 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements Sh
      * 此处针对的是热点数据，不是所有数据
      */
     public Shop queryWithLogicalExpire(Long id) {
-        String key = CACHE_SHOP_KEY + id;
-        // 1. 从redis中查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        // 2. 判断是否存在
-        if (StrUtil.isBlank(shopJson)) {
-            // redis中不存在，则返回
-            return null;
-        }
-        // 3. 缓存命中，JSON反序列化成对象
-        RedisData redisData = JSONUtil.toBean(shopJson, RedisData.class);
-        JSONObject data = (JSONObject) redisData.getData();
-        Shop shop = JSONUtil.toBean(data, Shop.class);
-        LocalDateTime expireTime = redisData.getExpireTime();
-        // 4. 判断数据是否过期
-        if (expireTime.isAfter(LocalDateTime.now())) {
-            //  数据未过期，返回店铺信息
-            return shop;
-        }
-        // 5. 数据过期，更新缓存数据
-        // 6. 尝试获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        // 6.1 获取成功
-        if (isLock) {
-            // 注意：获取锁成功应该再次检测redis缓存是否过期，做DoubleCheck，如果存在则无需重建缓存。
-            // DoubleCheck：请求1刚刚把Redis数据更新为新数据并释放了锁，请求2查询到旧数据后拿到锁，就得需要再次查询Redis看是否过期，减少与数据库交互的可能次数。
-            String shopJson1 = stringRedisTemplate.opsForValue().get(key);
-            if (StringUtil.isBlank(shopJson1)) {
-                return null;
-            }
-            RedisData redisData1 = JSONUtil.toBean(shopJson1, RedisData.class);
-            LocalDateTime expireTime1 = redisData.getExpireTime();
-            if (expireTime1.isAfter(LocalDateTime.now())) {
-                return JSONUtil.toBean((JSONObject) redisData1.getData(), Shop.class);
-            }
-            // 7. 开启新线程进行缓存重建（使用线程池）
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    // 8. 查询数据库数据
-                    // 9. 更新缓存数据到redis中
-                    saveShopRedis(id, 20L);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    // 10. 释放锁
-                    unlock(lockKey);
-                }
-            });
-        }
-        // 6.2. 获取失败，返回旧数据
-        // 返回旧数据
-        return shop;
+        // 逻辑过期 + 提前刷新：到达刷新时间后由CacheRebuildExecutor异步重建（按key去重、有界队列），期间返回旧数据
+        return cacheRedisUtil.queryWithLogicalExpire(CACHE_SHOP_KEY, LOCK_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_LOGICAL_TTL, TimeUnit.SECONDS);
     }
 
     /**
      * 作用1：模拟商铺热点数据预热（给使用逻辑过期策略解决缓存击穿问题做前提准备，前提是执行单元测试中的预热方法【见DianPingApplicationTest】）
      * 作用2：缓存重建
      */
-    public void saveShopRedis(Long id, Long expireSeconds) throws InterruptedException {
+    public void saveShopRedis(Long id, Long expireSeconds) {
         // 1. 查询店铺数据
         Shop shop = getById(id);
         if (shop == null) {
             return;
         }
-        // 模拟缓存重建的时间
-        Thread.sleep(200);
-        // 2. 封装逻辑过期时间
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireSeconds));
-        // 3. 写入redis，不需要设置过期时间（有逻辑过期时间）
-        String key = CACHE_SHOP_KEY + id;
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        // 2. 写入redis，封装逻辑过期时间和提前刷新时间，不需要设置过期时间
+        cacheRedisUtil.setWithLogicalExpire(CACHE_SHOP_KEY + id, shop, expireSeconds, TimeUnit.SECONDS);
     }
 
     /**
      * 解决缓存击穿问题
-     * 根据id查询店铺，第三版：使用互斥锁
+     * 根据id查询店铺，第三版：使用互斥锁，并在Redis前加一级本地缓存
      */
     @Override
     public Result queryById(Long id) {
-        Shop shop = queryWithMutex(id);
+        // 0. 布隆过滤器判断id不存在，直接返回（解决缓存穿透）
+        if (!idBloomFilter.mightContain(IdBloomFilter.SHOP, id)) {
+            return Result.fail("商铺不存在");
+        }
+        // 1. 判断是否为热点商铺（访问已在recordAccess中记录）
+        String localKey = id.toString();
+        boolean hot = shopHotKeyDetector.isHot(localKey);
+        // 2. 先查本地缓存
+        ShopEntry entry = shopLocalCache.get(localKey);
+        if (entry != null) {
+            return Result.ok(entry.shop);
+        }
+        Shop shop = null;
+        // 3. 本地缓存未命中，查redis：热点商铺查逻辑过期缓存，不存在或非热点商铺使用互斥锁重建
+        if (hot) {
+            shop = queryHotShop(id);
+        }
+        if (shop == null) {
+            shop = queryWithMutex(id);
+        }
         if (shop == null) {
             return Result.fail("商铺不存在");
         }
+        // 4. 写入本地缓存
+        shopLocalCache.put(localKey, new ShopEntry(shop));
         return Result.ok(shop);
     }
 
+    /**
+     * 热点商铺序列化好的响应体，与本地缓存中的商铺保存在一起，随本地缓存一起过期和删除
+     * 不是热点商铺或本地缓存中没有时返回null，由调用方走queryById
+     */
+    @Override
+    public SerializedBody queryHotShopBody(Long id) {
+        String localKey = id.toString();
+        // 1. 只有热点商铺保存响应体
+        if (!shopHotKeyDetector.isHot(localKey)) {
+            return null;
+        }
+        ShopEntry entry = shopLocalCache.get(localKey);
+        if (entry == null) {
+            return null;
+        }
+        // 2. 第一次访问时按条目中的商铺序列化，保证响应体与商铺一致
+        SerializedBody body = entry.body;
+        if (body == null) {
+            body = responseBodyWriter.serialize(Result.ok(entry.shop));
+            entry.body = body;
+        }
+        return body;
+    }
+
+    /**
+     * 记录一次商铺访问，用于热点探测
+     * 需要在响应体缓存之前调用：响应体缓存命中的请求不会进入queryById，只在queryById中记录时热点商铺永远不会被晋升
+     */
+    @Override
+    public void recordAccess(Long id) {
+        // 不存在的商铺不参与统计
+        if (idBloomFilter.mightContain(IdBloomFilter.SHOP, id)) {
+            shopHotKeyDetector.record(id.toString());
+        }
+    }
+
+    /**
+     * 热点商铺：查询逻辑过期缓存（永不过期，提前异步刷新）
+     * 缓存不存在时（还未写入、商铺已更新或被其他节点降级）重新提交写入，本次返回null由调用方走互斥锁
+     */
+    private Shop queryHotShop(Long id) {
+        Shop shop = cacheRedisUtil.queryWithLogicalExpire(CACHE_SHOP_HOT_KEY, LOCK_SHOP_HOT_KEY, id, shopCodec, this::getById, CACHE_SHOP_LOGICAL_TTL, TimeUnit.SECONDS);
+        if (shop == null) {
+            promoteHotShop(id);
+        }
+        return shop;
+    }
+
+    /**
+     * 异步写入热点商铺的逻辑过期缓存（与提前刷新使用同一个去重key）
+     */
+    private void promoteHotShop(Long id) {
+        String key = CACHE_SHOP_HOT_KEY + id;
+        cacheRebuildExecutor.submit(key, () -> {
+            Shop shop = getById(id);
+            if (shop != null) {
+                cacheRedisUtil.setWithLogicalExpire(key, shop, shopCodec, CACHE_SHOP_LOGICAL_TTL, TimeUnit.SECONDS);
+            }
+        });
+    }
+
     /**
      * 缓存击穿（使用互斥锁）
      */
     public Shop queryWithMutex(Long id) {
-        String key = CACHE_SHOP_KEY + id;
-        // 1. 查询缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(shopJson)) {
+        String key = CACHE_SHOP_CODEC_KEY + id;
+        // 1. 查询缓存（按shopCodec编码的字节）
+        byte[] shopBytes = bytesRedisTemplate.opsForValue().get(key);
+        if (shopBytes != null && shopBytes.length > 0) {
             // 2. 缓存命中返回数据
-            return JSONUtil.toBean(shopJson, Shop.class);
+            shopLocalCache.recordL2Hit();
+            return shopCodec.decode(shopBytes);
         }
         // 3. 缓存未命中
         // 3.1 缓存是否是否是空值
-        if (shopJson != null) {
+        if (shopBytes != null) {
+            shopLocalCache.recordL2Hit();
             return null;
         }
-        // 4. 实现缓存重建
-        // 4.1 尝试获取互斥锁
+        shopLocalCache.recordL2Miss();
+        // 4. 实现缓存重建：同一节点对同一商铺的并发请求合并为一次，只有一个线程竞争互斥锁
+        return singleFlight.execute(key, () -> rebuildWithMutex(id), CACHE_REBUILD_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 互斥锁重建商铺缓存（每个节点只有单飞的加载线程进入）
+     * 未获取到锁时循环等待其他节点重建完成，不递归，超过等待时间抛出异常
+     */
+    private Shop rebuildWithMutex(Long id) {
+        String key = CACHE_SHOP_CODEC_KEY + id;
         String lockKey = LOCK_SHOP_KEY + id;
-        Shop shop = null;
-        // 4.2 判断是否获取成功
-        boolean isLock = tryLock(lockKey);
-        if (isLock) {
-            try {
-                // 4.4 成功，根据id查询数据库
-                shop = getById(id);
-                // 模拟延迟时间
-                Thread.sleep(200);
-                if (shop == null) {
-                    // 不存在，将空值写入redis
-                    stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                    return null;
+        long deadline = System.currentTimeMillis() + CACHE_REBUILD_WAIT_MILLIS;
+        while (true) {
+            // 1. 尝试获取互斥锁
+            if (tryLock(lockKey)) {
+                try {
+                    // 2. DoubleCheck：其他节点可能刚刚重建完成
+                    byte[] shopBytes = bytesRedisTemplate.opsForValue().get(key);
+                    if (shopBytes != null) {
+                        return shopBytes.length == 0 ? null : shopCodec.decode(shopBytes);
+                    }
+                    // 3. 根据id查询数据库
+                    Shop shop = getById(id);
+                    if (shop == null) {
+                        // 不存在，将空值写入redis
+                        bytesRedisTemplate.opsForValue().set(key, new byte[0], CACHE_NULL_TTL, TimeUnit.MINUTES);
+                        return null;
+                    }
+                    // 4. 存在，写入redis
+                    bytesRedisTemplate.opsForValue().set(key, shopCodec.encode(shop), cacheRedisUtil.jitterMillis(CACHE_SHOP_TTL, TimeUnit.MINUTES), TimeUnit.MILLISECONDS);
+                    return shop;
+                } finally {
+                    // 5. 释放互斥锁
+                    unlock(lockKey);
                 }
-                // 存在，写入redis
-                stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), CACHE_SHOP_TTL, TimeUnit.MINUTES);
+            }
+            // 6. 其他节点正在重建，短暂等待后查询缓存
+            if (System.currentTimeMillis() >= deadline) {
+                throw new RuntimeException("商铺缓存重建超时：" + id);
+            }
+            try {
+                Thread.sleep(CACHE_REBUILD_POLL_MILLIS);
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
-            } finally {
-                // 7. 释放互斥锁
-                unlock(lockKey);
             }
-        } else {
-            // 4.3 失败，休眠并等待重试
-            try {
-                Thread.sleep(50);
-                return queryWithMutex(id);
-            } catch (InterruptedException ex) {
-                ex.printStackTrace();
+            byte[] shopBytes = bytesRedisTemplate.opsForValue().get(key);
+            if (shopBytes != null) {
+                return shopBytes.length == 0 ? null : shopCodec.decode(shopBytes);
             }
         }
-        //  返回
-        return shop;
     }
 
     private boolean tryLock(String key) {
@@ -257,7 +408,7 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements Sh
             return null;
         }
         // 5. 数据库中存在数据，将商铺信息写入redis，并设置超时时间，避免redis缓存过多数据
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), cacheRedisUtil.jitterMillis(CACHE_SHOP_TTL, TimeUnit.MINUTES), TimeUnit.MILLISECONDS);
         // 6. 返回
         return shop;
     }
@@ -282,7 +433,7 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements Sh
             return Result.fail("商铺不存在");
         }
         // 4. 数据库中存在数据，将商铺信息写入redis，并设置超时时间，避免redis缓存过多数据
-        stringRedisTemplate.opsForValue().set(cacheShopKey, JSONUtil.toJsonStr(shop), CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        stringRedisTemplate.opsForValue().set(cacheShopKey, JSONUtil.toJsonStr(shop), cacheRedisUtil.jitterMillis(CACHE_SHOP_TTL, TimeUnit.MINUTES), TimeUnit.MILLISECONDS);
         // 5. 返回商铺信息
         return Result.ok(shop);
     }
@@ -294,18 +445,65 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements Sh
         if (id == null) {
             return Result.fail("店铺id不可为空");
         }
-        // 1. 更新数据库
+        // 1. 类型可能改变时，查询旧类型，用于从旧类型的GEO索引中移除
+        Long oldTypeId = null;
+        if (shop.getTypeId() != null) {
+            Shop old = getById(id);
+            oldTypeId = old == null ? null : old.getTypeId();
+        }
+        // 2. 更新数据库
         boolean success = updateById(shop);
-        // 2. 删除缓存
+        // 3. 发布缓存删除和商铺变更事件，事务提交后删除缓存（redis缓存、响应体缓存和所有节点的本地缓存）并延迟双删，同步GEO索引
         if (success) {
-            String cacheShopKey = CACHE_SHOP_KEY + shop.getId();
-            stringRedisTemplate.delete(cacheShopKey);
+            publishShopChange(id, oldTypeId);
         }
         return Result.ok();
     }
 
+    @Override
+    @Transactional
+    public Result deleteShop(Long id) {
+        Shop shop = getById(id);
+        if (shop == null) {
+            return Result.fail("店铺不存在");
+        }
+        // 1. 删除数据库（布隆过滤器不支持删除，已删除的id会放行到缓存空值）
+        boolean success = removeById(id);
+        // 2. 发布缓存删除和商铺变更事件
+        if (success) {
+            publishShopChange(id, shop.getTypeId());
+        }
+        return Result.ok();
+    }
+
+    private void publishShopChange(Long id, Long oldTypeId) {
+        eventPublisher.publishEvent(new CacheInvalidateEvent(
+                Arrays.asList(CACHE_SHOP_KEY + id, CACHE_SHOP_CODEC_KEY + id, CACHE_SHOP_HOT_KEY + id),
+                SHOP_LOCAL_CACHE, id));
+        eventPublisher.publishEvent(new ShopChangeEvent(id, oldTypeId));
+    }
+
+    @Override
+    public Result saveShop(Shop shop) {
+        // 1. 写入数据库
+        boolean success = save(shop);
+        if (!success) {
+            return Result.fail("新增店铺失败");
+        }
+        // 2. 加入布隆过滤器
+        idBloomFilter.add(IdBloomFilter.SHOP, shop.getId());
+        // 3. 发布商铺变更事件，更新内存索引和Redis GEO索引
+        eventPublisher.publishEvent(new ShopChangeEvent(shop.getId()));
+        return Result.ok(shop.getId());
+    }
+
     @Override
     public Result queryShopByName(String name, Integer current) {
+        // 有关键字且名称索引已构建时，从倒排索引按相关度分页查询id，再按id顺序查询商铺
+        if (StrUtil.isNotBlank(name) && shopNameIndex.isReady()) {
+            List<Long> ids = shopNameIndex.search(name, (current - 1) * MAX_PAGE_SIZE, MAX_PAGE_SIZE);
+            return Result.ok(ids.isEmpty() ? Collections.emptyList() : listShopsInOrder(ids));
+        }
         LambdaQueryWrapper<Shop> queryWrapper = new LambdaQueryWrapper<>();
         // 根据名字分页查询
         queryWrapper.like(StrUtil.isNotBlank(name), Shop::getName, name);
@@ -314,6 +512,12 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements Sh
         return Result.ok(shopPage.getRecords());
     }
 
+    @Override
+    public Result suggest(String prefix, Integer limit) {
+        // 只读内存快照，不访问Redis和数据库
+        return Result.ok(shopSuggester.suggest(prefix, limit == null ? DEFAULT_PAGE_SIZE : limit));
+    }
+
     @Override
     public Result queryShopByType(Integer typeId, Integer current, Double x, Double y) {
         // 1. 判断是否需要根据坐标查询
@@ -325,8 +529,12 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements Sh
             return Result.ok(shopPage.getRecords());
         }
         // 2. 计算分页参数
-        int from = (current - 1) * DEFAULT_BATCH_SIZE;
-        int to = from + DEFAULT_BATCH_SIZE;
+        int from = (current - 1) * DEFAULT_PAGE_SIZE;
+        int to = from + DEFAULT_PAGE_SIZE;
+        // 使用内存空间索引时直接返回带距离的商铺，索引未构建完成时回退到Redis GEO
+        if (GEO_SOURCE_MEMORY.equals(geoSource) && shopGeoIndex.isReady()) {
+            return Result.ok(shopGeoIndex.search(typeId.longValue(), x, y, 5000, from, DEFAULT_PAGE_SIZE));
+        }
         // 3. 查询redis，按照距离排序、分页，结果：shopId, distance（找到to个商铺，然后再截取）
         // GEOSEARCH key BYLONLAT x y  BYRADIUS 10 WITHDISTANCE
         String key = SHOP_GEO_KEY + typeId;
@@ -345,28 +553,128 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements Sh
         // 存储ids
         List<Long> ids = new ArrayList<>(content.size());
         // 存储distance
-        HashMap<String, Distance> distanceMap = new HashMap<>();
+        HashMap<String, Double> distanceMap = new HashMap<>();
         // 4.1 截取form-to的部分
         content.stream().skip(from).forEach(result -> {
             // 获取店铺id
             String shopIdStr = result.getContent().getName();
             ids.add(Long.valueOf(shopIdStr));
             // 获取距离
-            Distance distance = result.getDistance();
-            distanceMap.put(shopIdStr, distance);
+            distanceMap.put(shopIdStr, result.getDistance().getValue());
         });
-        // 5. 根据id查询shop
+        // 5. 根据id查询shop，6. 返回
+        return Result.ok(listShopsWithDistance(ids, distanceMap));
+    }
+
+    /**
+     * 附近商铺多条件查询：在内存空间索引上按价格、评分、营业时间筛选，按距离、评分、销量加权排序，不访问数据库
+     */
+    @Override
+    public Result queryNearbyShops(NearbyShopQuery query) {
+        if (query.getTypeId() == null || query.getX() == null || query.getY() == null) {
+            return Result.fail("商铺类型和坐标不可为空");
+        }
+        if (query.getRadius() != null && !(query.getRadius() > 0)) {
+            return Result.fail("搜索半径必须大于0");
+        }
+        if (!shopNearbySearcher.isReady()) {
+            return Result.fail("附近商铺索引加载中，请稍后重试");
+        }
+        int current = query.getCurrent() == null || query.getCurrent() < 1 ? 1 : query.getCurrent();
+        return Result.ok(shopNearbySearcher.search(query, (current - 1) * DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE));
+    }
+
+    /**
+     * 游标分页查询附近商铺：
+     * 第一页用GEOSEARCHSTORE把按距离排好序的全部结果（shopId -> distance）存为快照ZSET，后续翻页只对快照做ZRANGE，
+     * 每页的代价和页码无关，快照有效期内用户滚动时结果顺序保持稳定
+     */
+    @Override
+    public Result queryShopByTypeWithCursor(Integer typeId, String cursor, Integer current, Double x, Double y) {
+        if (x == null || y == null) {
+            return Result.fail("坐标不可为空");
+        }
+        if (current == null || current < 1) {
+            current = 1;
+        }
+        // 1. 游标不存在或快照已过期时，重新生成快照（此时结果可能与之前的页不连续）
+        // 游标只允许是UUID，避免拼出任意key
+        String cursorKey = cursor == null || !cursor.matches("[0-9a-f]{32}") ? null : SHOP_GEO_CURSOR_KEY + cursor;
+        if (cursorKey == null || !BooleanUtil.isTrue(stringRedisTemplate.expire(cursorKey, SHOP_GEO_CURSOR_TTL, TimeUnit.MINUTES))) {
+            cursor = UUID.randomUUID().toString(true);
+            cursorKey = SHOP_GEO_CURSOR_KEY + cursor;
+            // GEOSEARCHSTORE cursorKey shop:geo:typeId FROMLONLAT x y BYRADIUS 5000 m ASC STOREDIST
+            Long size = stringRedisTemplate.opsForGeo().searchAndStore(SHOP_GEO_KEY + typeId, cursorKey,
+                    GeoReference.fromCoordinate(x, y), new Distance(5000),
+                    RedisGeoCommands.GeoSearchStoreCommandArgs.newGeoSearchStoreArgs().sortAscending().storeDistance());
+            if (size == null || size == 0) {
+                return Result.ok(buildGeoScrollResult(Collections.emptyList(), cursor, current, false));
+            }
+            stringRedisTemplate.expire(cursorKey, SHOP_GEO_CURSOR_TTL, TimeUnit.MINUTES);
+        }
+        // 2. 按下标读取当前页：ZRANGE cursorKey from to WITHSCORES，score即距离
+        int from = (current - 1) * DEFAULT_PAGE_SIZE;
+        // 多读一条用于判断是否还有下一页
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .rangeWithScores(cursorKey, from, from + DEFAULT_PAGE_SIZE);
+        if (tuples == null || tuples.isEmpty()) {
+            return Result.ok(buildGeoScrollResult(Collections.emptyList(), cursor, current, false));
+        }
+        // 3. 解析出id和距离
+        List<Long> ids = new ArrayList<>(DEFAULT_PAGE_SIZE);
+        HashMap<String, Double> distanceMap = new HashMap<>();
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            if (ids.size() == DEFAULT_PAGE_SIZE) {
+                break;
+            }
+            ids.add(Long.valueOf(tuple.getValue()));
+            distanceMap.put(tuple.getValue(), tuple.getScore());
+        }
+        // 4. 根据id查询shop并返回
+        return Result.ok(buildGeoScrollResult(listShopsWithDistance(ids, distanceMap), cursor, current, tuples.size() > DEFAULT_PAGE_SIZE));
+    }
+
+    /**
+     * 按ids的顺序查询商铺，并赋值距离
+     */
+    private List<Shop> listShopsWithDistance(List<Long> ids, Map<String, Double> distanceMap) {
+        List<Shop> shops = listShopsInOrder(ids);
+        for (Shop shop : shops) {
+            // 赋值Distance
+            shop.setDistance(distanceMap.get(shop.getId().toString()));
+        }
+        return shops;
+    }
+
+    /**
+     * 按ids的顺序查询商铺
+     */
+    private List<Shop> listShopsInOrder(List<Long> ids) {
         String idStr = StrUtil.join(",", ids);
         LambdaQueryWrapper<Shop> queryWrapper = new LambdaQueryWrapper<Shop>()
                 .in(Shop::getId, ids)
-                .last("ORDER BY FILED( id," + idStr + ")");
-        List<Shop> shops = this.list(queryWrapper);
-        for (Shop shop : shops) {
-            // 赋值Distance
-            shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
+                .last("ORDER BY FIELD(id," + idStr + ")");
+        return this.list(queryWrapper);
+    }
+
+    private GeoScrollResult buildGeoScrollResult(List<?> list, String cursor, Integer current, boolean hasMore) {
+        GeoScrollResult result = new GeoScrollResult();
+        result.setList(list);
+        result.setCursor(cursor);
+        result.setCurrent(current);
+        result.setHasMore(hasMore);
+        return result;
+    }
+
+    /**
+     * 商铺本地缓存条目：热点商铺同时保存序列化好的响应体
+     */
+    private static class ShopEntry {
+        private final Shop shop;
+        private volatile SerializedBody body;
+
+        private ShopEntry(Shop shop) {
+            this.shop = shop;
         }
-        // 6. 返回
-        return Result.ok(shops);
     }
 }
-
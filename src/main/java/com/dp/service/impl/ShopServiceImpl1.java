@@ -4,6 +4,7 @@ import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.dp.dto.NearbyShopQuery;
 import com.dp.dto.Result;
 import com.dp.entity.Shop;
 import com.dp.mapper.ShopMapper;
@@ -67,6 +68,18 @@ public class ShopServiceImpl1 extends ServiceImpl<ShopMapper, Shop> implements S
         return Result.ok();
     }
 
+    @Override
+    public Result saveShop(Shop shop) {
+        save(shop);
+        return Result.ok(shop.getId());
+    }
+
+    @Override
+    public Result deleteShop(Long id) {
+        removeById(id);
+        return Result.ok();
+    }
+
     @Override
     public Result queryShopByName(String name, Integer current) {
         LambdaQueryWrapper<Shop> queryWrapper = new LambdaQueryWrapper<>();
@@ -81,5 +94,19 @@ public class ShopServiceImpl1 extends ServiceImpl<ShopMapper, Shop> implements S
     public Result queryShopByType(Integer typeId, Integer current, Double x, Double y) {
         return null;
     }
-}
 
+    @Override
+    public Result queryShopByTypeWithCursor(Integer typeId, String cursor, Integer current, Double x, Double y) {
+        return null;
+    }
+
+    @Override
+    public Result queryNearbyShops(NearbyShopQuery query) {
+        return null;
+    }
+
+    @Override
+    public Result suggest(String prefix, Integer limit) {
+        return null;
+    }
+}
@@ -1,53 +1,123 @@
 package com.dp.service.impl;
 
-import cn.hutool.json.JSONUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.crypto.SecureUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.dp.dto.Result;
 import com.dp.entity.ShopType;
 import com.dp.mapper.ShopTypeMapper;
 import com.dp.service.ShopTypeService;
-import com.dp.utils.redis.CacheRedisUtil;
+import com.dp.utils.cache.ShopTypeSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-import static com.dp.utils.redis.RedisConstants.SHOP_TYPE_KEY;
-import static com.dp.utils.redis.RedisConstants.SHOP_TYPE_LOCK_KEY;
+import static com.dp.utils.redis.RedisConstants.SHOP_TYPE_VERSION_KEY;
 
+/**
+ * 商铺类型很少变化，每个节点在内存中保存不可变的快照（类型列表 + 序列化好的响应体），查询时不访问Redis和数据库
+ * 1. 定时读取Redis中的版本号（shop_type:version），版本号变化时从数据库重新加载并整体替换快照
+ * 2. 修改商铺类型后执行 INCR shop_type:version，所有节点在一个轮询间隔内刷新
+ */
+@Slf4j
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements ShopTypeService {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 与Spring MVC使用同一个ObjectMapper，保证预先序列化的响应体与正常响应一致
+     */
     @Resource
-    private CacheRedisUtil cacheRedisUtil;
+    private ObjectMapper objectMapper;
+
+    @Value("${dianping.shop-type.poll-interval-seconds:5}")
+    private long pollIntervalSeconds;
+
+    private volatile ShopTypeSnapshot snapshot;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("shop-type-refresh-", true));
+
+    @PostConstruct
+    private void init() {
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
 
     @Override
     public Result getList() {
-        // 先查缓存
-        List<ShopType> typeList = null;
-        List<String> jsonList = stringRedisTemplate.opsForList().range(SHOP_TYPE_KEY, 0, -1);
-        if (jsonList != null && !jsonList.isEmpty()) {
-            typeList = jsonList.stream().map(json -> JSONUtil.toBean(json, ShopType.class)).collect(Collectors.toList());
-            return Result.ok(typeList);
+        return Result.ok(getSnapshot().getTypes());
+    }
+
+    @Override
+    public ShopTypeSnapshot getSnapshot() {
+        ShopTypeSnapshot current = snapshot;
+        if (current != null) {
+            return current;
         }
-        // 缓存没有，查数据库
-        if (cacheRedisUtil.tryLock(SHOP_TYPE_LOCK_KEY)) {
-            try {
-                typeList = this.list();
-                List<String> typeListStr = typeList.stream().map(type -> JSONUtil.toJsonStr(type)).collect(Collectors.toList());
-                stringRedisTemplate.opsForList().rightPushAll(SHOP_TYPE_KEY, typeListStr);
-            } finally {
-                cacheRedisUtil.unlock(SHOP_TYPE_LOCK_KEY);
+        // 启动后第一次加载完成之前的请求，同步加载一次
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = load(readVersion());
             }
-        } else {
-            return getList();
+            return snapshot;
+        }
+    }
+
+    /**
+     * 版本号变化时重新加载，失败时保留旧快照，下次轮询重试
+     */
+    private void poll() {
+        try {
+            long version = readVersion();
+            ShopTypeSnapshot current = snapshot;
+            if (current != null && current.getVersion() == version) {
+                return;
+            }
+            synchronized (this) {
+                snapshot = load(version);
+            }
+            log.info("商铺类型快照已刷新，版本{}，类型{}个", version, snapshot.getTypes().size());
+        } catch (Exception e) {
+            log.error("商铺类型快照刷新失败", e);
+        }
+    }
+
+    private long readVersion() {
+        String version = stringRedisTemplate.opsForValue().get(SHOP_TYPE_VERSION_KEY);
+        return version == null ? 0L : Long.parseLong(version);
+    }
+
+    /**
+     * 先读版本号再查数据库：修改类型后才递增版本号，因此快照不会比它的版本号旧
+     */
+    private ShopTypeSnapshot load(long version) {
+        List<ShopType> types = Collections.unmodifiableList(this.list(new LambdaQueryWrapper<ShopType>().orderByAsc(ShopType::getSort)));
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(Result.ok(types));
+            String etag = "\"" + SecureUtil.md5().digestHex(body) + "\"";
+            return new ShopTypeSnapshot(version, types, body, etag);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("商铺类型序列化失败", e);
         }
-        return Result.ok(typeList);
     }
 }
@@ -15,6 +15,8 @@ import com.dp.mapper.UserMapper;
 import com.dp.service.UserService;
 import com.dp.utils.RegexUtils;
 import com.dp.utils.UserHolder;
+import com.dp.utils.cache.CacheStrategy;
+import com.dp.utils.cache.RedisCacheable;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.connection.BitFieldSubCommands;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -243,5 +245,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         // 6. 返回结果
         return Result.ok(count);
     }
-}
 
+    @Override
+    @RedisCacheable(keyPrefix = CACHE_USER_KEY, strategy = CacheStrategy.MUTEX, ttl = CACHE_USER_TTL, dataType = UserDTO.class, emptyMessage = "用户不存在")
+    public Result queryUserById(Long userId) {
+        User user = getById(userId);
+        if (user == null) {
+            return Result.fail("用户不存在");
+        }
+        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
+        return Result.ok(userDTO);
+    }
+}
@@ -1,6 +1,7 @@
 package com.dp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
@@ -11,14 +12,21 @@ import com.dp.entity.VoucherOrder;
 import com.dp.mapper.VoucherOrderMapper;
 import com.dp.service.SeckillVoucherService;
 import com.dp.service.VoucherOrderService;
+import com.dp.utils.redis.IdGenerator;
 import com.dp.utils.redis.RedisIdWorker;
+import com.dp.utils.redis.SeckillSoldOutRegistry;
 import com.dp.utils.redis.SimpleRedisLock;
+import com.dp.utils.redis.SnowflakeIdWorker;
 import com.dp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.aop.framework.AopContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
@@ -26,10 +34,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -49,18 +63,65 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private RedisIdWorker redisIdWorker;
 
+    /**
+     * 配置dianping.id.generator=snowflake时才存在
+     */
+    @Autowired(required = false)
+    private SnowflakeIdWorker snowflakeIdWorker;
+
     @Resource
     private RedissonClient redissonClient;
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private SeckillSoldOutRegistry soldOutRegistry;
+
     private final static DefaultRedisScript<Long> SECKILL_SCRIPT;
     private final static DefaultRedisScript<Long> SECKILL_SCRIPT1;
+    /**
+     * 代理对象，用于在线程池中调用事务方法（线程池中拿不到AopContext，且消费者启动后可能还没有请求进来，所以直接延迟注入）
+     */
+    @Lazy
+    @Resource
     private VoucherOrderService proxy;
     private BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024 * 1024);
     private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
 
+    /**
+     * stream.orders的消费者线程数（每个实例）
+     */
+    @Value("${dianping.seckill.order.consumer-count:4}")
+    private int orderConsumerCount;
+
+    /**
+     * 每次XREADGROUP最多读取的消息数
+     */
+    @Value("${dianping.seckill.order.batch-size:50}")
+    private int orderBatchSize;
+
+    /**
+     * pending-list中的消息最多投递的次数，超过后转入死信队列
+     */
+    @Value("${dianping.seckill.order.max-deliveries:5}")
+    private int orderMaxDeliveries;
+
+    /**
+     * 其他消费者（已下线、序号被减少或主机名变化）超过该时间没有活动且有未ack消息时，认领其消息
+     */
+    @Value("${dianping.seckill.order.claim-idle-millis:60000}")
+    private long orderClaimIdleMillis;
+
+    @Value("${server.port:8080}")
+    private String serverPort;
+
+    private static final long PENDING_BACKOFF_MIN_MILLIS = 100L;
+    private static final long PENDING_BACKOFF_MAX_MILLIS = 5000L;
+
+    private ExecutorService seckillOrderConsumers;
+    private volatile boolean orderConsumerRunning = true;
+
     static {
         SECKILL_SCRIPT = new DefaultRedisScript();
         SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
@@ -73,107 +134,312 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 
     /**
      * 下单秒杀优惠券：版本5：优惠券库存和一人一单记录保存在Redis中，然后下单信息保存在Redis的消息队列中，然后让一个线程池去处理。
-     * （TODO 待优化：在优惠券入库时存储hash结构，主要涉及优惠券的库存、开始结束时间，可在lua中进行逻辑判断）
+     * 优惠券售罄后由本地售罄登记表直接拒绝，不再访问Redis、也不再生成订单id
+     * 优惠券入库时已在redis中存储hash结构（库存、开始结束时间），lua脚本中原子地判断秒杀时间、库存和一人一单，不查数据库
      *
      * @param voucherId: 秒杀优惠券Id
      */
     @Override
     public Result seckillVoucher(Long voucherId) {
+        // 本地判断是否已售罄
+        if (soldOutRegistry.isSoldOut(voucherId)) {
+            return Result.fail("优惠券库存不足");
+        }
         // 获取用户id
         Long userId = UserHolder.getUser().getId();
-        // 订单id
-        Long orderId = redisIdWorker.nextId("order");
-        // 执行lua脚本
+        // 订单id（lua脚本中扣减库存和写入消息队列是原子的，所以订单id需要在执行脚本前生成）
+        Long orderId = orderIdGenerator().nextId("order");
+        // 执行lua脚本（记录执行前的时间，执行期间补充了库存时不登记售罄）
+        long requestTime = System.currentTimeMillis();
         Long result = stringRedisTemplate.execute(
                 SECKILL_SCRIPT1,
                 Collections.emptyList(),
                 voucherId.toString(), userId.toString(), String.valueOf(orderId));
+        if (result == null) {
+            return Result.fail("下单失败，请稍后重试");
+        }
         // 判断脚本返回值，返回结果即可，加入消息队列操作已在lua脚本中完成。
         int r = result.intValue();
         switch (r) {
             case 1:
                 return Result.fail("优惠券不存在");
             case 2:
+                // 登记售罄并广播给所有节点
+                soldOutRegistry.markSoldOut(voucherId, requestTime);
                 return Result.fail("优惠券库存不足");
             case 3:
                 return Result.fail("不可重复下单");
+            case 4:
+                return Result.fail("不在秒杀时间");
             default:
-                // 注意：此处是为方便在线程池执行消息队列任务时可以使用代理类执行事务方法
-                proxy = (VoucherOrderService) AopContext.currentProxy();
                 return Result.ok(orderId);
         }
     }
 
+    /**
+     * 订单id生成器：启用了本地雪花算法时使用SnowflakeIdWorker，否则使用RedisIdWorker
+     */
+    private IdGenerator orderIdGenerator() {
+        return snowflakeIdWorker != null ? snowflakeIdWorker : redisIdWorker;
+    }
+
     @PostConstruct
     private void init1() {
-        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler1());
+        // 消费者名：主机名:端口-序号。同一实例重启后名称不变，可以接着处理自己pending-list中的消息
+        String consumerPrefix = getConsumerPrefix();
+        seckillOrderConsumers = Executors.newFixedThreadPool(orderConsumerCount, new NamedThreadFactory("seckill-order-", false));
+        for (int i = 0; i < orderConsumerCount; i++) {
+            seckillOrderConsumers.submit(new VoucherOrderHandler1(consumerPrefix + "-" + i));
+        }
+        log.info("订单消费者已开启，消费者数：{}，每批最多：{}条", orderConsumerCount, orderBatchSize);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        orderConsumerRunning = false;
+        if (seckillOrderConsumers != null) {
+            seckillOrderConsumers.shutdownNow();
+        }
+    }
+
+    private String getConsumerPrefix() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return "c-" + host + ":" + serverPort;
     }
 
     private class VoucherOrderHandler1 implements Runnable {
 
-        private String queueName = "stream.orders";
+        private final String queueName = "stream.orders";
+
+        private final String deadLetterQueueName = "stream.orders.dlq";
+
+        private final String consumerName;
+
+        private VoucherOrderHandler1(String consumerName) {
+            this.consumerName = consumerName;
+        }
+
+        /**
+         * 上次认领其他消费者消息的时间，初始为0：启动后先认领一次
+         */
+        private long lastClaimMillis;
 
         @Override
         public void run() {
-            while (true) {
+            while (orderConsumerRunning) {
                 try {
-                    // 1. 从redis stream流中获取下单消息 XREADGROUP g1 c1 COUNT 1 BLOCK
-                    // --- g1：消费组组名，c1：消费者名
-                    // --- 每次读取1条信息，阻塞2秒
+                    // 0. 定期认领已下线消费者pending-list中的消息，与自己的pending-list一起重试或转入死信队列
+                    if (System.currentTimeMillis() - lastClaimMillis >= orderClaimIdleMillis) {
+                        lastClaimMillis = System.currentTimeMillis();
+                        if (claimIdle()) {
+                            handlerPendingList();
+                        }
+                    }
+                    // 1. 从redis stream流中批量获取下单消息 XREADGROUP GROUP g1 consumerName COUNT batchSize BLOCK 2000
+                    // --- g1：消费组组名，consumerName：本实例内唯一的消费者名
+                    // --- 每次最多读取batchSize条信息，阻塞2秒
                     // --- stream.orders：key名，lastConsumed()里面是'>'：读取最新未消费的消息
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
+                            Consumer.from("g1", consumerName),
+                            StreamReadOptions.empty().count(orderBatchSize).block(Duration.ofSeconds(2)),
                             StreamOffset.create(queueName, ReadOffset.lastConsumed()));
                     // 2. 判断消息是否成功
                     // 2.1 获取失败，说明没有消息，继续下一个循环
                     if (list == null || list.isEmpty()) {
                         continue;
                     }
-                    // 2.2 获取成功
-                    // 3. 解析消息中信息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    RecordId recordId = record.getId();
-                    Map<Object, Object> values = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
-                    // 4. 创建订单
-                    handleVoucherOrder(voucherOrder);
-                    // 5. ack消息
-                    stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", recordId);
+                    // 2.2 获取成功，创建订单并ack
+                    handleRecords(list);
                 } catch (Exception e) {
-                    // 6. 有异常，则处理未消费的消息（pending list）
+                    if (!orderConsumerRunning) {
+                        break;
+                    }
+                    // 3. 有异常，则处理未消费的消息（pending list）
                     log.error("发现订单异常", e);
                     handlerPendingList();
                 }
             }
         }
 
+        /**
+         * 处理pending-list中的消息：
+         * 1. 整批失败时逐条重试，只让失败的消息留在pending-list中，不阻塞同一批的其他订单
+         * 2. 仍有失败时指数退避后再读取，避免立即重试打满数据库
+         * 3. 投递次数（XPENDING中的delivery count）达到上限的消息转入死信队列并ack，等待人工处理
+         */
         private void handlerPendingList() {
-            while (true) {
+            long backoffMillis = PENDING_BACKOFF_MIN_MILLIS;
+            while (orderConsumerRunning) {
                 try {
-                    // 1. 获取pending-list中的订单消息 XREADGROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS s1 0
+                    // 1. 投递次数达到上限的消息转入死信队列
+                    deadLetterExhausted();
+                    // 2. 获取pending-list中的订单消息 XREADGROUP GROUP g1 consumerName COUNT batchSize STREAMS stream.orders 0
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
+                            Consumer.from("g1", consumerName),
+                            StreamReadOptions.empty().count(orderBatchSize),
                             StreamOffset.create(queueName, ReadOffset.from("0")));
-                    // 2. 判断订单消息是否为空
                     // 2.1 消息为空，则说明异常消息已经处理完，退出循环
                     if (list == null || list.isEmpty()) {
                         break;
                     }
                     // 2.2 消息不为空，处理消息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    // 3. 解析消息信息
-                    RecordId recordId = record.getId();
-                    Map<Object, Object> values = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
-                    // 4. 下单
-                    handleVoucherOrder(voucherOrder);
-                    // 5. ack消息
-                    stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", recordId);
+                    if (handleRecordsOneByOneOnFailure(list)) {
+                        backoffMillis = PENDING_BACKOFF_MIN_MILLIS;
+                        continue;
+                    }
                 } catch (Exception e) {
                     log.error("处理订单异常", e);
                 }
+                // 3. 仍有失败的消息，退避后重试
+                if (!sleep(backoffMillis)) {
+                    break;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, PENDING_BACKOFF_MAX_MILLIS);
+            }
+        }
+
+        /**
+         * 认领其他消费者的消息：XINFO CONSUMERS中空闲超过claim-idle-millis且有pending消息的消费者视为已下线，
+         * XPENDING读取其消息后XCLAIM到当前消费者（XCLAIM再次检查空闲时间，多个消费者同时认领时只有一个成功）
+         * 活跃的消费者每次XREADGROUP都会刷新空闲时间（阻塞读取最多2秒），不会被认领
+         *
+         * @return 是否认领到消息
+         */
+        private boolean claimIdle() {
+            boolean claimed = false;
+            StreamInfo.XInfoConsumers consumers = stringRedisTemplate.opsForStream().consumers(queueName, "g1");
+            for (StreamInfo.XInfoConsumer consumer : consumers) {
+                if (consumerName.equals(consumer.consumerName())
+                        || consumer.pendingCount() == 0
+                        || consumer.idleTimeMs() < orderClaimIdleMillis) {
+                    continue;
+                }
+                while (orderConsumerRunning) {
+                    // XPENDING stream.orders g1 - + batchSize 下线的消费者
+                    PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                            queueName, Consumer.from("g1", consumer.consumerName()), Range.unbounded(), orderBatchSize);
+                    if (pending.isEmpty()) {
+                        break;
+                    }
+                    RecordId[] ids = pending.stream().map(PendingMessage::getId).toArray(RecordId[]::new);
+                    // XCLAIM stream.orders g1 consumerName minIdle id...
+                    List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().claim(
+                            queueName, "g1", consumerName, Duration.ofMillis(orderClaimIdleMillis), ids);
+                    if (records.isEmpty()) {
+                        // 已被其他消费者认领
+                        break;
+                    }
+                    claimed = true;
+                    log.warn("认领消费者{}未处理的订单消息{}条", consumer.consumerName(), records.size());
+                }
+            }
+            return claimed;
+        }
+
+        /**
+         * 先整批处理，失败时逐条处理
+         *
+         * @return 是否全部处理成功
+         */
+        private boolean handleRecordsOneByOneOnFailure(List<MapRecord<String, Object, Object>> list) {
+            try {
+                handleRecords(list);
+                return true;
+            } catch (Exception e) {
+                if (list.size() == 1) {
+                    log.error("处理订单消息失败：{}", list.get(0).getId(), e);
+                    return false;
+                }
+                log.error("批量处理订单失败，逐条重试，本批消息数：{}", list.size(), e);
+            }
+            boolean allSuccess = true;
+            for (MapRecord<String, Object, Object> record : list) {
+                try {
+                    handleRecords(Collections.singletonList(record));
+                } catch (Exception e) {
+                    allSuccess = false;
+                    log.error("处理订单消息失败：{}", record.getId(), e);
+                }
+            }
+            return allSuccess;
+        }
+
+        /**
+         * XPENDING stream.orders g1 - + batchSize consumerName：投递次数达到上限的消息写入死信队列stream.orders.dlq后ack
+         */
+        private void deadLetterExhausted() {
+            PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                    queueName, Consumer.from("g1", consumerName), Range.unbounded(), orderBatchSize);
+            for (PendingMessage message : pending) {
+                if (message.getTotalDeliveryCount() < orderMaxDeliveries) {
+                    continue;
+                }
+                String id = message.getIdAsString();
+                List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                        .range(queueName, Range.closed(id, id));
+                if (records != null && !records.isEmpty()) {
+                    Map<Object, Object> values = new HashMap<>(records.get(0).getValue());
+                    values.put("sourceId", id);
+                    values.put("deliveryCount", String.valueOf(message.getTotalDeliveryCount()));
+                    stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(deadLetterQueueName).ofMap(values));
+                }
+                stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", message.getId());
+                log.error("订单消息投递{}次仍失败，已转入死信队列：{}", message.getTotalDeliveryCount(), id);
+            }
+        }
+
+        /**
+         * @return 是否正常睡眠，被中断时返回false
+         */
+        private boolean sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * 解析一批消息并在一个事务中批量下单，成功后用一次XACK确认
+         * 事务失败则整批都不ack，留在pending-list中重试（createVoucherOrders会判断一人一单，重复处理不会重复下单）
+         * 因数据库库存不足没有写入的订单也不ack，留在pending-list中，投递次数达到上限后转入死信队列等待补偿
+         */
+        private void handleRecords(List<MapRecord<String, Object, Object>> list) {
+            Map<Long, RecordId> recordIds = new HashMap<>(list.size() * 2);
+            List<VoucherOrder> voucherOrders = new ArrayList<>(list.size());
+            List<RecordId> unparsed = new ArrayList<>();
+            for (MapRecord<String, Object, Object> record : list) {
+                // 1. 解析消息中信息
+                Map<Object, Object> values = record.getValue();
+                VoucherOrder order = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
+                if (order.getId() == null) {
+                    unparsed.add(record.getId());
+                    continue;
+                }
+                recordIds.put(order.getId(), record.getId());
+                voucherOrders.add(order);
+            }
+            if (!unparsed.isEmpty()) {
+                log.error("订单消息缺少订单id，留在pending-list中：{}", unparsed);
+            }
+            // 2. 批量创建订单（lua脚本已保证一人一单，这里不再逐个用户加分布式锁）
+            List<VoucherOrder> unwritten = voucherOrders.isEmpty() ? Collections.emptyList() : proxy.createVoucherOrders(voucherOrders);
+            for (VoucherOrder order : unwritten) {
+                recordIds.remove(order.getId());
+            }
+            // 3. 批量ack已处理的消息 XACK stream.orders g1 id1 id2 ...
+            if (!recordIds.isEmpty()) {
+                stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", recordIds.values().toArray(new RecordId[0]));
+            }
+            if (!unwritten.isEmpty() || !unparsed.isEmpty()) {
+                throw new IllegalStateException("部分订单未写入，数量：" + (unwritten.size() + unparsed.size()));
             }
         }
     }
@@ -204,12 +470,10 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                     return Result.fail("不可重复下单");
             }
         }
-        // 注意：此处是为方便在线程池执行阻塞队列任务时可以使用代理类执行事务方法
-        proxy = (VoucherOrderService) AopContext.currentProxy();
         // 3. 0-下单成功，下单信息加入到阻塞队列中
         VoucherOrder voucherOrder = new VoucherOrder();
         // 3.1 订单信息（订单id使用Id生成器生成）
-        Long orderId = redisIdWorker.nextId("order");
+        Long orderId = orderIdGenerator().nextId("order");
         voucherOrder.setUserId(userId);
         voucherOrder.setVoucherId(voucherId);
         voucherOrder.setId(orderId);
@@ -297,6 +561,75 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         log.error("库存不足");
     }
 
+    /**
+     * 批量保存订单：一批订单只开一个事务，同一优惠券先尝试只扣减一次库存（stock = stock - n），订单使用JDBC批量插入
+     * 订单在lua脚本中已经通过了库存和一人一单校验，这里的判断只是兜底（例如消息被重复消费）
+     * 整组扣减失败（数据库库存少于n）时逐个订单扣减，能扣减多少就写入多少，其余返回给调用方，不确认消息
+     *
+     * @param voucherOrders: 已通过lua校验的订单
+     * @return 因数据库库存不足没有写入的订单
+     */
+    @Transactional
+    @Override
+    public List<VoucherOrder> createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        // 1. 按优惠券分组，同一批中同一用户同一优惠券只保留一条
+        Map<Long, Map<Long, VoucherOrder>> ordersByVoucher = new HashMap<>();
+        for (VoucherOrder order : voucherOrders) {
+            ordersByVoucher.computeIfAbsent(order.getVoucherId(), k -> new LinkedHashMap<>())
+                    .putIfAbsent(order.getUserId(), order);
+        }
+        List<VoucherOrder> toSave = new ArrayList<>(voucherOrders.size());
+        List<VoucherOrder> unwritten = new ArrayList<>();
+        for (Map.Entry<Long, Map<Long, VoucherOrder>> entry : ordersByVoucher.entrySet()) {
+            Long voucherId = entry.getKey();
+            Map<Long, VoucherOrder> orders = entry.getValue();
+            // 2. 判断是否已经下单（一人一单）：一次查出本批用户中已下过单的用户
+            LambdaQueryWrapper<VoucherOrder> queryWrapper = new LambdaQueryWrapper<VoucherOrder>()
+                    .select(VoucherOrder::getUserId)
+                    .eq(VoucherOrder::getVoucherId, voucherId)
+                    .in(VoucherOrder::getUserId, new ArrayList<>(orders.keySet()));
+            for (VoucherOrder existed : this.list(queryWrapper)) {
+                log.error("用户已购买一次，用户：{}", existed.getUserId());
+                orders.remove(existed.getUserId());
+            }
+            if (orders.isEmpty()) {
+                continue;
+            }
+            // 3. 扣减库存，一个优惠券只执行一次：set stock = stock - n where voucher_id = ? and stock >= n
+            int n = orders.size();
+            if (decreaseStock(voucherId, n)) {
+                toSave.addAll(orders.values());
+                continue;
+            }
+            // 4. 整组扣减失败，逐个订单扣减
+            log.error("库存不足，逐个扣减，优惠券：{}，本批订单数：{}", voucherId, n);
+            for (VoucherOrder order : orders.values()) {
+                if (decreaseStock(voucherId, 1)) {
+                    toSave.add(order);
+                } else {
+                    unwritten.add(order);
+                }
+            }
+        }
+        // 5. 批量插入订单（连接参数rewriteBatchedStatements=true，驱动会改写成多值insert）
+        if (!toSave.isEmpty()) {
+            this.saveBatch(toSave);
+            log.info("批量创建订单成功，订单数：{}", toSave.size());
+        }
+        if (!unwritten.isEmpty()) {
+            log.error("数据库库存不足，未写入的订单数：{}", unwritten.size());
+        }
+        return unwritten;
+    }
+
+    private boolean decreaseStock(Long voucherId, int n) {
+        LambdaUpdateWrapper<SeckillVoucher> updateWrapper = Wrappers.<SeckillVoucher>lambdaUpdate()
+                .eq(SeckillVoucher::getVoucherId, voucherId)
+                .ge(SeckillVoucher::getStock, n)
+                .setSql("stock = stock - " + n);
+        return seckillVoucherService.update(updateWrapper);
+    }
+
     /**
      * 下单秒杀优惠券：版本3：使用Redission
      *
@@ -448,7 +781,7 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         // 8. 创建订单
         VoucherOrder order = new VoucherOrder();
         // 8.1 订单id（使用Id生成器生成）
-        Long orderId = redisIdWorker.nextId("order");
+        Long orderId = orderIdGenerator().nextId("order");
         order.setId(orderId);
         // 8.2 用户id
         order.setUserId(userId);
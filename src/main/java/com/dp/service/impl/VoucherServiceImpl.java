@@ -1,5 +1,6 @@
 package com.dp.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.dp.dto.Result;
 import com.dp.entity.SeckillVoucher;
@@ -7,7 +8,15 @@ import com.dp.entity.Voucher;
 import com.dp.mapper.VoucherMapper;
 import com.dp.service.SeckillVoucherService;
 import com.dp.service.VoucherService;
+import com.dp.utils.cache.CacheInvalidateEvent;
+import com.dp.utils.cache.CacheStrategy;
+import com.dp.utils.cache.RedisCacheEvict;
+import com.dp.utils.cache.RedisCacheable;
+import com.dp.utils.redis.SeckillSoldOutRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -15,9 +24,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import static com.dp.utils.redis.RedisConstants.SECKILL_STOCK_KEY;
+import static com.dp.utils.redis.RedisConstants.*;
 
 @Service
 public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> implements VoucherService {
@@ -28,8 +42,31 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private SeckillSoldOutRegistry soldOutRegistry;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    private static final DefaultRedisScript<Long> SECKILL_INIT_SCRIPT;
+
+    private static final int MIGRATE_PAGE_SIZE = 500;
+
+    static {
+        SECKILL_INIT_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_INIT_SCRIPT.setLocation(new ClassPathResource("seckillinit.lua"));
+        SECKILL_INIT_SCRIPT.setResultType(Long.class);
+    }
+
+    @Override
+    @RedisCacheEvict(keyPrefix = CACHE_VOUCHER_SHOP_KEY, key = "#voucher.shopId")
+    public void addVoucher(Voucher voucher) {
+        this.save(voucher);
+    }
+
     @Override
     @Transactional
+    @RedisCacheEvict(keyPrefix = CACHE_VOUCHER_SHOP_KEY, key = "#voucher.shopId")
     public void addSeckillVoucher(Voucher voucher) {
         // 保存优惠券基本信息
         this.save(voucher);
@@ -51,11 +88,126 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setStock(stock);
         // 保存秒杀优惠券
         seckillVoucherService.save(seckillVoucher);
-        // 保存秒杀库存到redis中
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(), voucher.getStock().toString());
+        // 保存秒杀优惠券信息（库存、开始结束时间）到redis中
+        saveSeckillVoucherRedis(voucher.getId(), beginTime, endTime, stock);
+    }
+
+    @Override
+    @Transactional
+    public void updateSeckillVoucher(Voucher voucher) {
+        Long id = voucher.getId();
+        if (id == null) {
+            throw new RuntimeException("优惠券id不可为空");
+        }
+        // 更新优惠券基本信息（只修改秒杀信息时也会更新修改时间，保证update语句中有set字段）
+        voucher.setUpdateTime(LocalDateTime.now());
+        this.updateById(voucher);
+        // 删除店铺优惠券列表缓存（请求中不一定有店铺id，从数据库读取）：事务提交后删除并延迟双删，避免提交前被并发查询用旧数据回填
+        Voucher current = this.getById(id);
+        if (current != null) {
+            eventPublisher.publishEvent(new CacheInvalidateEvent(
+                    Collections.singletonList(CACHE_VOUCHER_SHOP_KEY + current.getShopId()), null, null));
+        }
+        SeckillVoucher seckillVoucher = seckillVoucherService.getById(id);
+        if (seckillVoucher == null) {
+            // 普通券
+            return;
+        }
+        // 更新秒杀信息，未传的字段不修改
+        if (voucher.getBeginTime() != null) {
+            seckillVoucher.setBeginTime(voucher.getBeginTime());
+        }
+        if (voucher.getEndTime() != null) {
+            seckillVoucher.setEndTime(voucher.getEndTime());
+        }
+        Integer stock = voucher.getStock();
+        if (stock != null) {
+            seckillVoucher.setStock(stock);
+        }
+        if (seckillVoucher.getBeginTime().isAfter(seckillVoucher.getEndTime())
+                || (stock != null && stock < 0)) {
+            throw new RuntimeException("秒杀优惠券参数有误");
+        }
+        seckillVoucherService.updateById(seckillVoucher);
+        if (stock == null) {
+            // 旧版本创建的优惠券没有hash，只更新时间会写出缺少库存字段的hash，先补建
+            initSeckillVoucherRedis(seckillVoucher);
+        }
+        // 重建redis中的秒杀优惠券信息，未传库存时保留redis中当前的库存
+        saveSeckillVoucherRedis(id, seckillVoucher.getBeginTime(), seckillVoucher.getEndTime(), stock);
+        if (stock != null && stock > 0) {
+            // 补充了库存，取消所有节点的售罄登记
+            soldOutRegistry.clearSoldOut(id);
+        }
+    }
+
+    /**
+     * 保存秒杀优惠券信息到redis的hash中：seckill:voucher:{id} -> begin、end（毫秒时间戳）、stock
+     * lua脚本直接根据hash判断优惠券是否存在、是否在秒杀时间内以及库存是否充足，下单时不需要查询数据库
+     *
+     * @param stock: 库存，为null时只更新时间信息
+     */
+    private void saveSeckillVoucherRedis(Long voucherId, LocalDateTime beginTime, LocalDateTime endTime, Integer stock) {
+        Map<String, String> voucherMap = new HashMap<>(4);
+        voucherMap.put("begin", String.valueOf(toEpochMilli(beginTime)));
+        voucherMap.put("end", String.valueOf(toEpochMilli(endTime)));
+        if (stock != null) {
+            voucherMap.put("stock", stock.toString());
+        }
+        stringRedisTemplate.opsForHash().putAll(SECKILL_VOUCHER_KEY + voucherId, voucherMap);
+    }
+
+    /**
+     * 旧版本创建的秒杀优惠券在redis中只有库存key（seckill:stock:{id}），没有hash，lua脚本会判断为不存在
+     * 启动时为未结束的秒杀券补建hash（见SeckillVoucherMigrationRunner），下单时不再查询数据库；一人一单set与旧版本相同
+     *
+     * @return 补建的优惠券数
+     */
+    @Override
+    public int migrateLegacySeckillVouchers() {
+        int migrated = 0;
+        Long lastId = 0L;
+        LocalDateTime now = LocalDateTime.now();
+        while (true) {
+            // 按主键游标分页，只处理未结束的秒杀券
+            List<SeckillVoucher> seckillVouchers = seckillVoucherService.list(new LambdaQueryWrapper<SeckillVoucher>()
+                    .gt(SeckillVoucher::getVoucherId, lastId)
+                    .gt(SeckillVoucher::getEndTime, now)
+                    .orderByAsc(SeckillVoucher::getVoucherId)
+                    .last("limit " + MIGRATE_PAGE_SIZE));
+            for (SeckillVoucher seckillVoucher : seckillVouchers) {
+                if (initSeckillVoucherRedis(seckillVoucher)) {
+                    migrated++;
+                }
+            }
+            if (seckillVouchers.size() < MIGRATE_PAGE_SIZE) {
+                return migrated;
+            }
+            lastId = seckillVouchers.get(seckillVouchers.size() - 1).getVoucherId();
+        }
+    }
+
+    /**
+     * hash不存在时补建（lua脚本中判断，已存在时不覆盖）
+     *
+     * @return 是否补建
+     */
+    private boolean initSeckillVoucherRedis(SeckillVoucher seckillVoucher) {
+        Long voucherId = seckillVoucher.getVoucherId();
+        Long created = stringRedisTemplate.execute(SECKILL_INIT_SCRIPT,
+                Arrays.asList(SECKILL_VOUCHER_KEY + voucherId, SECKILL_STOCK_KEY + voucherId),
+                String.valueOf(toEpochMilli(seckillVoucher.getBeginTime())),
+                String.valueOf(toEpochMilli(seckillVoucher.getEndTime())),
+                String.valueOf(seckillVoucher.getStock()));
+        return created != null && created == 1;
+    }
+
+    private long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     @Override
+    @RedisCacheable(keyPrefix = CACHE_VOUCHER_SHOP_KEY, strategy = CacheStrategy.XFETCH, ttl = CACHE_VOUCHER_SHOP_TTL, dataType = Voucher.class)
     public Result queryVoucherOfShop(Long shopId) {
         List<Voucher> vouchers = this.baseMapper.queryVoucherOfShop(shopId);
         return Result.ok(vouchers);
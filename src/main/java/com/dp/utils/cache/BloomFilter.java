@@ -0,0 +1,123 @@
+package com.dp.utils.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的本地布隆过滤器（元素为long类型的id）
+ * 位数组可以与Redis的bitmap互相转换：第i位对应Redis中 SETBIT key i 1（每个字节从高位开始）
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * @param expectedInsertions: 预计元素数量
+     * @param fpp:                期望误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        // m = -n * ln(p) / (ln2)^2，按64位对齐
+        long m = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.numBits = (long) words << 6;
+        // k = m / n * ln2
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * 添加元素，返回该元素对应的所有位下标（用于同步到Redis）
+     */
+    public long[] add(long id) {
+        long[] indexes = indexes(id);
+        for (long index : indexes) {
+            setBit(index);
+        }
+        return indexes;
+    }
+
+    /**
+     * 元素是否可能存在：返回false时一定不存在
+     */
+    public boolean mightContain(long id) {
+        long h1 = mix(id);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            if (!getBit(Math.floorMod(h1 + i * h2, numBits))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long[] indexes(long id) {
+        long h1 = mix(id);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        long[] indexes = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            indexes[i] = Math.floorMod(h1 + i * h2, numBits);
+        }
+        return indexes;
+    }
+
+    /**
+     * 转换为Redis bitmap的字节格式
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[(int) (numBits >>> 3)];
+        for (int w = 0; w < bits.length(); w++) {
+            long word = bits.get(w);
+            if (word == 0) {
+                continue;
+            }
+            for (int b = 0; b < 64; b++) {
+                if ((word & (1L << b)) != 0) {
+                    int index = (w << 6) + b;
+                    bytes[index >>> 3] |= (byte) (0x80 >>> (index & 7));
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 合并Redis bitmap中的位（按位或）
+     */
+    public void merge(byte[] bytes) {
+        int length = (int) Math.min(bytes.length, numBits >>> 3);
+        for (int i = 0; i < length; i++) {
+            int value = bytes[i] & 0xFF;
+            if (value == 0) {
+                continue;
+            }
+            for (int k = 0; k < 8; k++) {
+                if ((value & (0x80 >>> k)) != 0) {
+                    setBit(((long) i << 3) + k);
+                }
+            }
+        }
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << (index & 63);
+        long old;
+        do {
+            old = bits.get(word);
+            if ((old & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, old, old | mask));
+    }
+
+    private boolean getBit(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << (index & 63))) != 0;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
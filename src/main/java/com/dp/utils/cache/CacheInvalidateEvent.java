@@ -0,0 +1,34 @@
+package com.dp.utils.cache;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 缓存删除事件：在事务中发布，事务提交后由CacheInvalidator删除缓存
+ */
+@Getter
+public class CacheInvalidateEvent {
+
+    /**
+     * 需要删除的redis key
+     */
+    private final List<String> keys;
+
+    /**
+     * 需要删除的本地缓存名和key，没有本地缓存时为null
+     */
+    private final String localCacheName;
+    private final Object localKey;
+
+    /**
+     * 事件发布时间，用于统计删除延迟
+     */
+    private final long createTime = System.currentTimeMillis();
+
+    public CacheInvalidateEvent(List<String> keys, String localCacheName, Object localKey) {
+        this.keys = keys;
+        this.localCacheName = localCacheName;
+        this.localKey = localKey;
+    }
+}
@@ -0,0 +1,276 @@
+package com.dp.utils.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.dp.utils.redis.RedisConstants.CACHE_INVALIDATE_STREAM;
+
+/**
+ * 可靠的缓存删除：
+ * 1. 事务提交后删除缓存（先删redis key，再广播删除所有节点的本地缓存），避免提交前删除后被并发请求用旧数据回填
+ * 2. 延迟一段时间后再删除一次（延迟双删，redis和本地缓存），清除提交前后并发读回填的旧数据
+ * 3. 删除失败时写入redis stream（stream.cache.invalidate），由定时任务按消费组读取重试，成功后ack并再次删除本地缓存，失败则留在pending-list中下次重试
+ *    下线节点未处理的消息空闲超过claim-idle-millis后由其他节点XCLAIM认领
+ * 4. 统计删除延迟（事件发布到删除成功）和各阶段失败次数
+ */
+@Slf4j
+@Component
+public class CacheInvalidator {
+
+    private static final String GROUP = "g1";
+    private static final String KEYS_FIELD = "keys";
+    private static final String CREATE_TIME_FIELD = "createTime";
+    private static final String LOCAL_CACHE_NAME_FIELD = "localCacheName";
+    private static final String LOCAL_KEY_FIELD = "localKey";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private LocalCacheManager localCacheManager;
+
+    @Value("${dianping.cache.invalidate.delay-millis:500}")
+    private long delayMillis;
+
+    @Value("${dianping.cache.invalidate.retry-interval-millis:1000}")
+    private long retryIntervalMillis;
+
+    @Value("${dianping.cache.invalidate.retry-batch-size:100}")
+    private int retryBatchSize;
+
+    @Value("${dianping.cache.invalidate.claim-idle-millis:30000}")
+    private long claimIdleMillis;
+
+    @Value("${server.port:8080}")
+    private String serverPort;
+
+    private String consumerName;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newScheduledThreadPool(2, new NamedThreadFactory("cache-invalidate-", true));
+
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder firstDeleteFailures = new LongAdder();
+    private final LongAdder delayedDeleteFailures = new LongAdder();
+    private final LongAdder enqueueFailures = new LongAdder();
+    private final LongAdder retrySuccesses = new LongAdder();
+    private final LongAdder retryFailures = new LongAdder();
+    private final LongAdder totalLagMillis = new LongAdder();
+    private final LongAdder lagSamples = new LongAdder();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        consumerName = "c-" + host + ":" + serverPort;
+        try {
+            // XGROUP CREATE stream.cache.invalidate g1 0 MKSTREAM
+            stringRedisTemplate.opsForStream().createGroup(CACHE_INVALIDATE_STREAM, ReadOffset.from("0"), GROUP);
+        } catch (Exception e) {
+            // 消费组已存在
+            log.debug("缓存删除重试队列的消费组已存在");
+        }
+        scheduler.scheduleWithFixedDelay(this::retry, retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 事务提交后执行；没有事务时（fallbackExecution）在发布时直接执行
+     * 先删除redis再广播本地缓存删除：反过来时，其他节点在redis删除前本地未命中，会把redis中的旧数据回填到本地缓存
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onInvalidate(CacheInvalidateEvent event) {
+        invalidations.increment();
+        String localCacheName = event.getLocalCacheName();
+        String localKey = event.getLocalKey() == null ? null : event.getLocalKey().toString();
+        // 1. 第一次删除，失败则进入重试队列
+        List<String> keys = event.getKeys();
+        try {
+            stringRedisTemplate.delete(keys);
+            recordLag(event.getCreateTime());
+        } catch (Exception e) {
+            firstDeleteFailures.increment();
+            log.error("缓存删除失败，进入重试队列：{}", keys, e);
+            enqueue(keys, localCacheName, localKey, event.getCreateTime());
+        }
+        // 2. 删除所有节点的本地缓存
+        invalidateLocal(localCacheName, localKey);
+        // 3. 延迟双删：redis和本地缓存都再删除一次（本地缓存可能在延迟期间回填了redis中的旧数据）
+        scheduler.schedule(() -> {
+            try {
+                stringRedisTemplate.delete(keys);
+            } catch (Exception e) {
+                delayedDeleteFailures.increment();
+                log.error("延迟删除缓存失败，进入重试队列：{}", keys, e);
+                enqueue(keys, localCacheName, localKey, event.getCreateTime());
+            }
+            invalidateLocal(localCacheName, localKey);
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void invalidateLocal(String localCacheName, String localKey) {
+        if (localCacheName == null) {
+            return;
+        }
+        try {
+            localCacheManager.invalidate(localCacheName, localKey);
+        } catch (Exception e) {
+            // 本地缓存有过期时间，广播失败时最多读到过期时间内的旧数据
+            log.error("本地缓存删除广播失败：{} {}", localCacheName, localKey, e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long samples = lagSamples.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("invalidations", invalidations.sum());
+        stats.put("firstDeleteFailures", firstDeleteFailures.sum());
+        stats.put("delayedDeleteFailures", delayedDeleteFailures.sum());
+        stats.put("enqueueFailures", enqueueFailures.sum());
+        stats.put("retrySuccesses", retrySuccesses.sum());
+        stats.put("retryFailures", retryFailures.sum());
+        stats.put("avgLagMillis", samples == 0 ? 0.0 : (double) totalLagMillis.sum() / samples);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        try {
+            stats.put("retryQueueLength", stringRedisTemplate.opsForStream().size(CACHE_INVALIDATE_STREAM));
+        } catch (Exception e) {
+            stats.put("retryQueueLength", -1);
+        }
+        return stats;
+    }
+
+    private void enqueue(List<String> keys, String localCacheName, String localKey, long createTime) {
+        Map<String, String> values = new HashMap<>(8);
+        values.put(KEYS_FIELD, String.join(",", keys));
+        values.put(CREATE_TIME_FIELD, String.valueOf(createTime));
+        if (localCacheName != null) {
+            values.put(LOCAL_CACHE_NAME_FIELD, localCacheName);
+            values.put(LOCAL_KEY_FIELD, localKey);
+        }
+        try {
+            stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(CACHE_INVALIDATE_STREAM).ofMap(values));
+        } catch (Exception e) {
+            // redis不可用时无法入队，只能依赖缓存过期时间
+            enqueueFailures.increment();
+            log.error("缓存删除写入重试队列失败：{}", keys, e);
+        }
+    }
+
+    /**
+     * 重试：先认领已下线节点长时间未处理的消息，再处理自己pending-list中之前失败的消息，最后读取新消息
+     */
+    private void retry() {
+        try {
+            claimIdle();
+            retry(ReadOffset.from("0"));
+            retry(ReadOffset.lastConsumed());
+        } catch (Exception e) {
+            log.error("读取缓存删除重试队列失败", e);
+        }
+    }
+
+    /**
+     * 其他消费者读取后超过claim-idle-millis仍未ack的消息（节点下线或重启后消费者名变化），XCLAIM到当前消费者并处理
+     */
+    private void claimIdle() {
+        // XPENDING stream.cache.invalidate g1 - + batchSize
+        PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                CACHE_INVALIDATE_STREAM, GROUP, Range.unbounded(), retryBatchSize);
+        RecordId[] idle = pending.stream()
+                .filter(message -> !consumerName.equals(message.getConsumerName()))
+                .filter(message -> message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdleMillis)
+                .map(PendingMessage::getId)
+                .toArray(RecordId[]::new);
+        if (idle.length == 0) {
+            return;
+        }
+        // XCLAIM stream.cache.invalidate g1 consumerName minIdle id...（再次检查空闲时间，避免与其他节点重复认领）
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().claim(
+                CACHE_INVALIDATE_STREAM, GROUP, consumerName, Duration.ofMillis(claimIdleMillis), idle);
+        log.info("认领其他消费者未处理的缓存删除消息{}条", records.size());
+        handle(records);
+    }
+
+    private void retry(ReadOffset offset) {
+        // XREADGROUP GROUP g1 consumerName COUNT batchSize STREAMS stream.cache.invalidate 0|>
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                Consumer.from(GROUP, consumerName),
+                StreamReadOptions.empty().count(retryBatchSize),
+                StreamOffset.create(CACHE_INVALIDATE_STREAM, offset));
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        handle(records);
+    }
+
+    private void handle(List<MapRecord<String, Object, Object>> records) {
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> values = record.getValue();
+            List<String> keys = Arrays.asList(values.get(KEYS_FIELD).toString().split(","));
+            try {
+                stringRedisTemplate.delete(keys);
+                stringRedisTemplate.opsForStream().acknowledge(CACHE_INVALIDATE_STREAM, GROUP, record.getId());
+                stringRedisTemplate.opsForStream().delete(CACHE_INVALIDATE_STREAM, record.getId());
+                retrySuccesses.increment();
+                recordLag(Long.parseLong(values.get(CREATE_TIME_FIELD).toString()));
+            } catch (Exception e) {
+                retryFailures.increment();
+                log.error("重试删除缓存失败：{}", keys, e);
+                continue;
+            }
+            // redis删除成功后再删除一次本地缓存，清除重试期间回填的旧数据
+            Object localCacheName = values.get(LOCAL_CACHE_NAME_FIELD);
+            if (localCacheName != null) {
+                invalidateLocal(localCacheName.toString(), String.valueOf(values.get(LOCAL_KEY_FIELD)));
+            }
+        }
+    }
+
+    private void recordLag(long createTime) {
+        long lag = System.currentTimeMillis() - createTime;
+        totalLagMillis.add(lag);
+        lagSamples.increment();
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+    }
+}
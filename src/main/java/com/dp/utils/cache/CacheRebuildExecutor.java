@@ -0,0 +1,161 @@
+package com.dp.utils.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存重建线程池
+ * 1. 有界队列，同一个key同时只有一个重建任务（按key去重）
+ * 2. 队列满时提交线程最多等待一小段时间（背压），仍然放不进去则丢弃并计数，调用方继续返回旧数据
+ * 3. 统计队列深度、重建耗时、丢弃数等指标
+ */
+@Slf4j
+@Component
+public class CacheRebuildExecutor {
+
+    @Value("${dianping.cache.rebuild.threads:4}")
+    private int threads;
+
+    @Value("${dianping.cache.rebuild.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${dianping.cache.rebuild.offer-timeout-millis:50}")
+    private long offerTimeoutMillis;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 正在排队或执行的重建key
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory("cache-rebuild-", true),
+                new BackpressurePolicy());
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交重建任务
+     *
+     * @param key:  缓存key，同一个key已有任务在排队或执行时不再重复提交
+     * @param task: 重建逻辑
+     * @return 是否提交成功（重复或被丢弃时返回false）
+     */
+    public boolean submit(String key, Runnable task) {
+        if (!inFlight.add(key)) {
+            deduplicated.increment();
+            return false;
+        }
+        RebuildTask rebuildTask = new RebuildTask(key, task);
+        executor.execute(rebuildTask);
+        if (rebuildTask.dropped) {
+            return false;
+        }
+        submitted.increment();
+        return true;
+    }
+
+    public Map<String, Object> stats() {
+        long completedCount = completed.sum();
+        long failedCount = failed.sum();
+        long finished = completedCount + failedCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("inFlightKeys", inFlight.size());
+        stats.put("submitted", submitted.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("completed", completedCount);
+        stats.put("failed", failedCount);
+        stats.put("avgLatencyMillis", finished == 0 ? 0.0 : (double) totalLatencyMillis.sum() / finished);
+        stats.put("maxLatencyMillis", maxLatencyMillis.get());
+        return stats;
+    }
+
+    private class RebuildTask implements Runnable {
+        private final String key;
+        private final Runnable task;
+        private volatile boolean dropped;
+
+        RebuildTask(String key, Runnable task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long begin = System.currentTimeMillis();
+            try {
+                task.run();
+                completed.increment();
+            } catch (Exception e) {
+                failed.increment();
+                log.error("缓存重建失败，key：{}", key, e);
+            } finally {
+                long latency = System.currentTimeMillis() - begin;
+                totalLatencyMillis.add(latency);
+                maxLatencyMillis.accumulateAndGet(latency, Math::max);
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 队列满时在提交线程中等待空位，超时则丢弃
+     */
+    private class BackpressurePolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            RebuildTask task = (RebuildTask) r;
+            try {
+                if (!executor.isShutdown()
+                        && executor.getQueue().offer(r, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.dropped = true;
+            dropped.increment();
+            inFlight.remove(task.key);
+            log.warn("缓存重建队列已满，丢弃重建任务，key：{}", task.key);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.dp.utils.cache;
+
+/**
+ * RedisCacheable的缓存策略，分别对应CacheRedisUtil中的查询方法
+ */
+public enum CacheStrategy {
+    /**
+     * 缓存空值，解决缓存穿透（CacheRedisUtil.queryWithPassThrough）
+     */
+    PASS_THROUGH,
+    /**
+     * 互斥锁重建，解决缓存击穿（CacheRedisUtil.queryWithMutex）
+     */
+    MUTEX,
+    /**
+     * 逻辑过期 + 提前刷新，缓存不存在时同步加载写入（CacheRedisUtil.queryWithLogicalExpire）
+     */
+    LOGICAL_EXPIRE,
+    /**
+     * 概率提前过期 + TTL随机值，解决缓存雪崩，不加锁（CacheRedisUtil.queryWithXFetch）
+     */
+    XFETCH
+}
@@ -0,0 +1,181 @@
+package com.dp.utils.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.dp.entity.Shop;
+import com.dp.service.ShopService;
+import com.dp.service.ShopTypeService;
+import com.dp.utils.codec.ValueCodec;
+import com.dp.utils.codec.ValueCodecs;
+import com.dp.utils.redis.CacheRedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dp.utils.redis.RedisConstants.CACHE_SHOP_CODEC_KEY;
+import static com.dp.utils.redis.RedisConstants.CACHE_SHOP_HOT_KEY;
+import static com.dp.utils.redis.RedisConstants.CACHE_SHOP_LOGICAL_TTL;
+import static com.dp.utils.redis.RedisConstants.CACHE_SHOP_TTL;
+
+/**
+ * 启动时缓存预热：商铺类型快照，以及按销量、评分排序的前N个商铺
+ * 1. 在后台线程中执行，不阻塞应用启动，预热期间正常提供服务
+ * 2. 商铺按(sold, score, id)游标逐页查询，每页用pipeline批量写入redis（有界线程池并行，队列满时由提交线程自己执行）
+ * 3. 只写入不存在的key（SET NX），不覆盖请求已写入的缓存
+ * 4. 前hot-top-n个商铺同时写入热点商铺的逻辑过期缓存（cache_shop_hot:），被探测为热点时不需要再异步加载
+ */
+@Slf4j
+@Component
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+    @Resource
+    private ShopService shopService;
+
+    @Resource
+    private ShopTypeService shopTypeService;
+
+    @Resource
+    private RedisTemplate<String, byte[]> bytesRedisTemplate;
+
+    @Resource
+    private CacheRedisUtil cacheRedisUtil;
+
+    @Value("${dianping.cache.codec:binary}")
+    private String cacheCodec;
+
+    @Value("${dianping.cache.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dianping.cache.warm-up.top-n:1000}")
+    private int topN;
+
+    @Value("${dianping.cache.warm-up.hot-top-n:100}")
+    private int hotTopN;
+
+    @Value("${dianping.cache.warm-up.page-size:1000}")
+    private int pageSize;
+
+    @Value("${dianping.cache.warm-up.threads:4}")
+    private int threads;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "cache-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        long begin = System.currentTimeMillis();
+        // 1. 商铺类型：提前加载内存快照
+        try {
+            shopTypeService.getSnapshot();
+        } catch (Exception e) {
+            log.error("商铺类型快照预热失败", e);
+        }
+        // 2. 商铺：按(sold, score, id)游标顺序查询，每页的redis写入并行执行
+        ValueCodec<Shop> shopCodec = ValueCodecs.of(Shop.class, cacheCodec);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads),
+                new NamedThreadFactory("cache-warm-up-", true),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        List<Future<?>> futures = new ArrayList<>();
+        AtomicLong warmed = new AtomicLong();
+        try {
+            Shop last = null;
+            int loaded = 0;
+            while (loaded < topN) {
+                List<Shop> shops = queryShops(last, Math.min(pageSize, topN - loaded));
+                if (shops.isEmpty()) {
+                    break;
+                }
+                // 前hotTopN个商铺同时写入热点商铺的逻辑过期缓存
+                List<Shop> hotShops = loaded < hotTopN ? shops.subList(0, Math.min(shops.size(), hotTopN - loaded)) : Collections.emptyList();
+                loaded += shops.size();
+                last = shops.get(shops.size() - 1);
+                futures.add(executor.submit(() -> {
+                    try {
+                        writeShops(shops, hotShops, shopCodec);
+                        log.info("商铺缓存预热进度：{}/{}", warmed.addAndGet(shops.size()), topN);
+                    } catch (Exception e) {
+                        log.error("商铺缓存预热失败，本页{}个商铺", shops.size(), e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("商铺缓存预热失败", e);
+        } finally {
+            executor.shutdown();
+        }
+        log.info("缓存预热完成，商铺{}个，耗时{}ms", warmed.get(), System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 游标查询下一页商铺：排序为 sold desc, score desc, id asc，从上一页最后一个商铺之后开始
+     * 不使用LIMIT offset，越往后翻页不会越慢
+     *
+     * @param last: 上一页最后一个商铺，为null时查询第一页
+     */
+    private List<Shop> queryShops(Shop last, int size) {
+        LambdaQueryWrapper<Shop> wrapper = new LambdaQueryWrapper<>();
+        if (last != null) {
+            Integer sold = last.getSold();
+            Integer score = last.getScore();
+            Long id = last.getId();
+            wrapper.and(w -> w.lt(Shop::getSold, sold)
+                    .or(o -> o.eq(Shop::getSold, sold).lt(Shop::getScore, score))
+                    .or(o -> o.eq(Shop::getSold, sold).eq(Shop::getScore, score).gt(Shop::getId, id)));
+        }
+        return shopService.list(wrapper
+                .orderByDesc(Shop::getSold)
+                .orderByDesc(Shop::getScore)
+                .orderByAsc(Shop::getId)
+                .last("limit " + size));
+    }
+
+    /**
+     * pipeline批量写入一页商铺缓存，热点商铺同时写入逻辑过期缓存
+     */
+    private void writeShops(List<Shop> shops, List<Shop> hotShops, ValueCodec<Shop> shopCodec) {
+        bytesRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Shop shop : shops) {
+                byte[] key = (CACHE_SHOP_CODEC_KEY + shop.getId()).getBytes(StandardCharsets.UTF_8);
+                Expiration expiration = Expiration.milliseconds(cacheRedisUtil.jitterMillis(CACHE_SHOP_TTL, TimeUnit.MINUTES));
+                connection.stringCommands().set(key, shopCodec.encode(shop), expiration, RedisStringCommands.SetOption.SET_IF_ABSENT);
+            }
+            return null;
+        });
+        for (Shop shop : hotShops) {
+            cacheRedisUtil.setWithLogicalExpire(CACHE_SHOP_HOT_KEY + shop.getId(), shop, shopCodec, CACHE_SHOP_LOGICAL_TTL, TimeUnit.SECONDS);
+        }
+    }
+}
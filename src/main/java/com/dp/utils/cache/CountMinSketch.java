@@ -0,0 +1,51 @@
+package com.dp.utils.cache;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 线程安全的Count-Min Sketch：用固定大小的计数器估算每个key的访问次数（只会高估，不会低估）
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicIntegerArray counters;
+
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicIntegerArray(depth * width);
+    }
+
+    public void increment(String key) {
+        int hash = key.hashCode();
+        for (int row = 0; row < depth; row++) {
+            counters.incrementAndGet(row * width + index(hash, row));
+        }
+    }
+
+    public int estimate(String key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(row * width + index(hash, row)));
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int hash, int row) {
+        int h = hash + row * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % width;
+    }
+}
@@ -0,0 +1,107 @@
+package com.dp.utils.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 滑动窗口热点key探测
+ * 窗口被分成若干个时间片，每个时间片一个CountMinSketch，访问计入当前时间片，估算值为所有时间片之和；
+ * 时间片轮转时清空最旧的一个（见HotKeyManager）
+ * 估算值达到threshold时晋升为热点key，低于threshold的一半时降级（留出间隔，避免反复晋升降级）
+ */
+@Slf4j
+public class HotKeyDetector {
+
+    /**
+     * 热点key晋升、降级的回调
+     */
+    public interface Listener {
+        void onPromote(String key);
+
+        void onDemote(String key);
+    }
+
+    private final String name;
+    private final CountMinSketch[] slots;
+    private volatile int current;
+    private final int threshold;
+    private final int maxHotKeys;
+    private final Listener listener;
+
+    /**
+     * 热点key及其最近一次的访问次数估算值
+     */
+    private final ConcurrentMap<String, Integer> hotKeys = new ConcurrentHashMap<>();
+
+    HotKeyDetector(String name, int slotCount, int depth, int width, int threshold, int maxHotKeys, Listener listener) {
+        this.name = name;
+        this.slots = new CountMinSketch[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new CountMinSketch(depth, width);
+        }
+        this.threshold = threshold;
+        this.maxHotKeys = maxHotKeys;
+        this.listener = listener;
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @return 该key当前是否为热点key
+     */
+    public boolean record(String key) {
+        slots[current].increment(key);
+        if (hotKeys.containsKey(key)) {
+            return true;
+        }
+        int count = estimate(key);
+        if (count < threshold || hotKeys.size() >= maxHotKeys) {
+            return false;
+        }
+        if (hotKeys.putIfAbsent(key, count) == null) {
+            log.info("热点key晋升：{} {}，窗口内访问{}次", name, key, count);
+            listener.onPromote(key);
+        }
+        return true;
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    public Map<String, Integer> hotKeys() {
+        return new HashMap<>(hotKeys);
+    }
+
+    /**
+     * 轮转时间片：清空最旧的时间片，重新估算热点key，冷却的降级
+     */
+    void rotate() {
+        int next = (current + 1) % slots.length;
+        slots[next].clear();
+        current = next;
+        hotKeys.forEach((key, last) -> {
+            int count = estimate(key);
+            if (count >= threshold / 2) {
+                hotKeys.put(key, count);
+                return;
+            }
+            if (hotKeys.remove(key, last)) {
+                log.info("热点key降级：{} {}，窗口内访问{}次", name, key, count);
+                listener.onDemote(key);
+            }
+        });
+    }
+
+    private int estimate(String key) {
+        int count = 0;
+        for (CountMinSketch slot : slots) {
+            count += slot.estimate(key);
+        }
+        return count;
+    }
+}
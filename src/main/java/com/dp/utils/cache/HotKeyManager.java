@@ -0,0 +1,89 @@
+package com.dp.utils.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 管理所有的热点key探测器，并定时轮转它们的时间片
+ */
+@Slf4j
+@Component
+public class HotKeyManager {
+
+    @Value("${dianping.cache.hot-key.window-seconds:60}")
+    private int windowSeconds;
+
+    @Value("${dianping.cache.hot-key.slots:6}")
+    private int slotCount;
+
+    @Value("${dianping.cache.hot-key.depth:4}")
+    private int depth;
+
+    @Value("${dianping.cache.hot-key.width:4096}")
+    private int width;
+
+    @Value("${dianping.cache.hot-key.max-keys:1000}")
+    private int maxHotKeys;
+
+    private final ConcurrentMap<String, HotKeyDetector> detectors = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("hot-key-", true));
+
+    @PostConstruct
+    private void init() {
+        long slotMillis = TimeUnit.SECONDS.toMillis(windowSeconds) / slotCount;
+        scheduler.scheduleAtFixedRate(this::rotate, slotMillis, slotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 创建热点key探测器
+     *
+     * @param name:      探测器名称
+     * @param threshold: 窗口内访问次数达到该值即为热点key
+     * @param listener:  热点key晋升、降级的回调
+     */
+    public HotKeyDetector create(String name, int threshold, HotKeyDetector.Listener listener) {
+        HotKeyDetector detector = new HotKeyDetector(name, slotCount, depth, width, threshold, maxHotKeys, listener);
+        if (detectors.putIfAbsent(name, detector) != null) {
+            throw new IllegalStateException("热点key探测器已存在：" + name);
+        }
+        return detector;
+    }
+
+    /**
+     * 所有探测器当前的热点key及窗口内访问次数
+     */
+    public Map<String, Map<String, Integer>> hotKeys() {
+        Map<String, Map<String, Integer>> hotKeys = new LinkedHashMap<>();
+        detectors.forEach((name, detector) -> hotKeys.put(name, detector.hotKeys()));
+        return hotKeys;
+    }
+
+    private void rotate() {
+        for (HotKeyDetector detector : detectors.values()) {
+            try {
+                detector.rotate();
+            } catch (Exception e) {
+                log.error("热点key时间片轮转失败", e);
+            }
+        }
+    }
+}
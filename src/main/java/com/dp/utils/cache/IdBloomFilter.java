@@ -0,0 +1,204 @@
+package com.dp.utils.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.dp.entity.Blog;
+import com.dp.entity.Shop;
+import com.dp.mapper.BlogMapper;
+import com.dp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.dp.utils.redis.RedisConstants.*;
+
+/**
+ * 商铺、笔记id的布隆过滤器，解决缓存穿透：不存在的id在内存中直接拒绝，不再访问Redis和数据库
+ * 1. 启动时从数据库分页加载所有id，构建本地过滤器，并按位或合并到Redis bitmap（多节点同时构建互不覆盖）
+ * 2. 新增数据时：本地添加 + Redis SETBIT + 广播给其他节点
+ * 3. 定时读取Redis bitmap合并到本地，弥补丢失的广播消息
+ * 注意：构建完成之前不做拦截（全部放行），避免把已存在的数据误判为不存在
+ */
+@Slf4j
+@Component
+public class IdBloomFilter implements MessageListener {
+
+    public static final String SHOP = "shop";
+    public static final String BLOG = "blog";
+
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    @Value("${dianping.bloom.shop.expected-insertions:1000000}")
+    private long shopExpectedInsertions;
+
+    @Value("${dianping.bloom.blog.expected-insertions:1000000}")
+    private long blogExpectedInsertions;
+
+    @Value("${dianping.bloom.fpp:0.01}")
+    private double fpp;
+
+    @Value("${dianping.bloom.sync-interval-seconds:60}")
+    private long syncIntervalSeconds;
+
+    private final Map<String, BloomFilter> filters = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("bloom-filter-", true));
+
+    @PostConstruct
+    private void init() {
+        filters.put(SHOP, new BloomFilter(shopExpectedInsertions, fpp));
+        filters.put(BLOG, new BloomFilter(blogExpectedInsertions, fpp));
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(BLOOM_ADD_CHANNEL));
+        // 异步构建，不阻塞启动；构建完成后定时同步Redis bitmap
+        scheduler.execute(this::build);
+        scheduler.scheduleWithFixedDelay(this::syncFromRedis, syncIntervalSeconds, syncIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * id是否可能存在：返回false时一定不存在
+     */
+    public boolean mightContain(String name, Long id) {
+        if (id == null) {
+            return false;
+        }
+        if (!ready) {
+            return true;
+        }
+        return filters.get(name).mightContain(id);
+    }
+
+    /**
+     * 新增id：本地添加，写入Redis bitmap，并广播给其他节点
+     */
+    public void add(String name, Long id) {
+        long[] indexes = filters.get(name).add(id);
+        byte[] key = (BLOOM_KEY + name).getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long index : indexes) {
+                connection.setBit(key, index, true);
+            }
+            return null;
+        });
+        stringRedisTemplate.convertAndSend(BLOOM_ADD_CHANNEL, name + ":" + id);
+    }
+
+    private void build() {
+        try {
+            long begin = System.currentTimeMillis();
+            long shops = load(SHOP, last -> shopMapper.selectList(new LambdaQueryWrapper<Shop>()
+                    .select(Shop::getId)
+                    .gt(Shop::getId, last)
+                    .orderByAsc(Shop::getId)
+                    .last("limit " + LOAD_PAGE_SIZE)), Shop::getId);
+            long blogs = load(BLOG, last -> blogMapper.selectList(new LambdaQueryWrapper<Blog>()
+                    .select(Blog::getId)
+                    .gt(Blog::getId, last)
+                    .orderByAsc(Blog::getId)
+                    .last("limit " + LOAD_PAGE_SIZE)), Blog::getId);
+            // 合并Redis中其他节点添加的id后再开启拦截
+            syncFromRedis();
+            ready = true;
+            log.info("布隆过滤器构建完成，商铺{}个，笔记{}个，耗时{}ms", shops, blogs, System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            // 构建失败时保持放行，下次重启重新构建
+            log.error("布隆过滤器构建失败", e);
+        }
+    }
+
+    /**
+     * 按id游标分页加载，每页只查询id列
+     */
+    private <T> long load(String name, Function<Long, List<T>> pageLoader, Function<T, Long> idGetter) {
+        BloomFilter filter = filters.get(name);
+        long last = 0L;
+        long count = 0L;
+        while (true) {
+            List<T> page = pageLoader.apply(last);
+            for (T row : page) {
+                filter.add(idGetter.apply(row));
+            }
+            count += page.size();
+            if (page.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            last = idGetter.apply(page.get(page.size() - 1));
+        }
+        // 写入临时key后按位或合并到Redis bitmap，不覆盖其他节点SETBIT的数据
+        byte[] key = (BLOOM_KEY + name).getBytes(StandardCharsets.UTF_8);
+        byte[] tmpKey = (BLOOM_KEY + name + ":tmp:" + Thread.currentThread().getId() + System.nanoTime())
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = filter.toBytes();
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.set(tmpKey, bytes);
+            connection.bitOp(RedisStringCommands.BitOperation.OR, key, key, tmpKey);
+            connection.del(tmpKey);
+            return null;
+        });
+        return count;
+    }
+
+    private void syncFromRedis() {
+        try {
+            filters.forEach((name, filter) -> {
+                byte[] key = (BLOOM_KEY + name).getBytes(StandardCharsets.UTF_8);
+                byte[] bytes = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+                if (bytes != null) {
+                    filter.merge(bytes);
+                }
+            });
+        } catch (Exception e) {
+            log.error("同步Redis布隆过滤器失败", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        BloomFilter filter = index < 0 ? null : filters.get(body.substring(0, index));
+        if (filter == null) {
+            log.error("布隆过滤器广播消息有误：{}", body);
+            return;
+        }
+        filter.add(Long.parseLong(body.substring(index + 1)));
+    }
+}
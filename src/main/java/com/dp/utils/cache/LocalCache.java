@@ -0,0 +1,83 @@
+package com.dp.utils.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内一级缓存（L1），位于Redis（L2）之前
+ * 按容量淘汰，每个条目写入后经过ttl过期；同时统计各级缓存的命中情况
+ */
+public class LocalCache<V> {
+
+    private final String name;
+
+    private final Cache<String, V> cache;
+
+    /**
+     * L1未命中后，L2（Redis）的命中/未命中次数，由调用方记录
+     */
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+
+    LocalCache(String name, long maxSize, long ttl, TimeUnit unit) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl, unit)
+                .recordStats()
+                .build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public V get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(String key, V value) {
+        cache.put(key, value);
+    }
+
+    /**
+     * 只删除本节点的缓存，删除所有节点的缓存请使用LocalCacheManager.invalidate
+     */
+    void invalidateLocal(String key) {
+        cache.invalidate(key);
+    }
+
+    public void recordL2Hit() {
+        l2Hits.increment();
+    }
+
+    public void recordL2Miss() {
+        l2Misses.increment();
+    }
+
+    /**
+     * 各级缓存的命中统计
+     */
+    public Map<String, Object> stats() {
+        CacheStats l1 = cache.stats();
+        long l2HitCount = l2Hits.sum();
+        long l2MissCount = l2Misses.sum();
+        long l2Total = l2HitCount + l2MissCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("l1Size", cache.estimatedSize());
+        stats.put("l1Hits", l1.hitCount());
+        stats.put("l1Misses", l1.missCount());
+        stats.put("l1HitRate", l1.hitRate());
+        stats.put("l1Evictions", l1.evictionCount());
+        stats.put("l2Hits", l2HitCount);
+        stats.put("l2Misses", l2MissCount);
+        stats.put("l2HitRate", l2Total == 0 ? 1.0 : (double) l2HitCount / l2Total);
+        return stats;
+    }
+}
@@ -0,0 +1,91 @@
+package com.dp.utils.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.dp.utils.redis.RedisConstants.CACHE_INVALIDATE_CHANNEL;
+
+/**
+ * 管理所有的本地缓存，并通过Redis发布订阅把删除操作广播给所有节点
+ * 广播消息格式：缓存名:key
+ */
+@Slf4j
+@Component
+public class LocalCacheManager implements MessageListener {
+
+    private final ConcurrentMap<String, LocalCache<?>> caches = new ConcurrentHashMap<>();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 创建本地缓存
+     *
+     * @param name:    缓存名，同名缓存在所有节点间同步删除
+     * @param maxSize: 最大条目数，超过后淘汰
+     * @param ttl:     条目写入后的过期时间
+     */
+    public <V> LocalCache<V> create(String name, long maxSize, long ttl, TimeUnit unit) {
+        LocalCache<V> cache = new LocalCache<>(name, maxSize, ttl, unit);
+        if (caches.putIfAbsent(name, cache) != null) {
+            throw new IllegalStateException("本地缓存已存在：" + name);
+        }
+        return cache;
+    }
+
+    /**
+     * 删除所有节点中的缓存：先删除本节点，再广播给其他节点
+     */
+    public void invalidate(String name, Object key) {
+        LocalCache<?> cache = caches.get(name);
+        if (cache != null) {
+            cache.invalidateLocal(key.toString());
+        }
+        stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, name + ":" + key);
+    }
+
+    /**
+     * 所有本地缓存的命中统计
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.stats()));
+        return stats;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index < 0) {
+            log.error("缓存删除广播消息有误：{}", body);
+            return;
+        }
+        LocalCache<?> cache = caches.get(body.substring(0, index));
+        if (cache != null) {
+            cache.invalidateLocal(body.substring(index + 1));
+        }
+    }
+}
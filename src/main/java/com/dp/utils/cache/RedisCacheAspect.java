@@ -0,0 +1,214 @@
+package com.dp.utils.cache;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import com.dp.dto.Result;
+import com.dp.utils.codec.JsonValueCodec;
+import com.dp.utils.codec.ValueCodec;
+import com.dp.utils.codec.ValueCodecs;
+import com.dp.utils.redis.CacheRedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * RedisCacheable、RedisCacheEvict的实现：按策略调用CacheRedisUtil，并按缓存名统计调用次数、加载次数和耗时
+ */
+@Slf4j
+@Aspect
+@Component
+public class RedisCacheAspect {
+
+    @Resource
+    private CacheRedisUtil cacheRedisUtil;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${dianping.cache.codec:binary}")
+    private String cacheCodec;
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final ConcurrentMap<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Metrics> metrics = new ConcurrentHashMap<>();
+
+    @Around("@annotation(cacheable)")
+    @SuppressWarnings("unchecked")
+    public Object cacheable(ProceedingJoinPoint joinPoint, RedisCacheable cacheable) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Class<Object> type = (Class<Object>) signature.getReturnType();
+        if (type.isPrimitive()) {
+            throw new IllegalStateException("RedisCacheable不支持基本类型返回值：" + signature.getMethod());
+        }
+        String prefix = cacheable.keyPrefix();
+        String id = key(joinPoint, cacheable.key());
+        String lockKeyPrefix = StrUtil.isBlank(cacheable.lockKeyPrefix()) ? "lock:" + prefix : cacheable.lockKeyPrefix();
+        Metrics metric = metrics.computeIfAbsent(prefix, name -> new Metrics());
+        // 本线程查询数据库得到的原始结果（失败的Result不写入缓存值，需要原样返回）
+        AtomicReference<Object> loaded = new AtomicReference<>();
+        // 返回值为Result且data类型有二进制编解码器时只缓存data，否则整个返回值按JSON缓存
+        Class<?> dataType = cacheable.dataType();
+        boolean unwrap = Result.class.equals(type) && ValueCodecs.BINARY.equals(cacheCodec) && ValueCodecs.hasBinary(dataType);
+        ValueCodec<Object> codec = unwrap ? (ValueCodec<Object>) ValueCodecs.of(dataType, cacheCodec) : new JsonValueCodec<>(type);
+        Function<String, Object> dbFallback = ignored -> {
+            metric.loads.increment();
+            Object value = proceed(joinPoint);
+            loaded.set(value);
+            if (isEmpty(value)) {
+                return null;
+            }
+            return unwrap ? unwrapData((Result) value, dataType) : value;
+        };
+        long begin = System.nanoTime();
+        Object value;
+        switch (cacheable.strategy()) {
+            case MUTEX:
+                value = cacheRedisUtil.queryWithMutex(prefix, lockKeyPrefix, id, codec, dbFallback, cacheable.ttl(), cacheable.unit());
+                break;
+            case LOGICAL_EXPIRE:
+                value = cacheRedisUtil.queryWithLogicalExpire(prefix, lockKeyPrefix, id, codec, dbFallback, cacheable.ttl(), cacheable.unit());
+                if (value == null) {
+                    // 缓存不存在，同步加载并写入，不需要提前预热
+                    value = dbFallback.apply(id);
+                    if (value != null) {
+                        cacheRedisUtil.setWithLogicalExpire(prefix + id, value, codec, cacheable.ttl(), cacheable.unit());
+                    }
+                }
+                break;
+            case XFETCH:
+                value = cacheRedisUtil.queryWithXFetch(prefix, id, codec, dbFallback, cacheable.ttl(), cacheable.unit());
+                break;
+            default:
+                value = cacheRedisUtil.queryWithPassThrough(prefix, id, codec, dbFallback, cacheable.ttl(), cacheable.unit());
+        }
+        metric.calls.increment();
+        metric.totalNanos.add(System.nanoTime() - begin);
+        if (value != null) {
+            return unwrap ? Result.ok(value) : restoreData(value, dataType);
+        }
+        if (loaded.get() != null) {
+            return loaded.get();
+        }
+        // 命中空值缓存
+        return Result.class.equals(type) ? Result.fail(cacheable.emptyMessage()) : null;
+    }
+
+    /**
+     * 不直接删除：发布CacheInvalidateEvent，由CacheInvalidator在事务提交后删除（没有事务时立即删除）
+     * 否则在事务方法内删除时，提交前的并发查询会把旧数据重新写入缓存
+     */
+    @AfterReturning("@annotation(evict)")
+    public void evict(JoinPoint joinPoint, RedisCacheEvict evict) {
+        String key = evict.keyPrefix() + key(joinPoint, evict.key());
+        eventPublisher.publishEvent(new CacheInvalidateEvent(Collections.singletonList(key), null, null));
+    }
+
+    /**
+     * 各个缓存的调用次数、命中率（未查询数据库的比例）和平均耗时
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        metrics.forEach((name, metric) -> {
+            long calls = metric.calls.sum();
+            long loads = metric.loads.sum();
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("calls", calls);
+            stat.put("loads", loads);
+            stat.put("hitRate", calls == 0 ? 1.0 : Math.max(0.0, 1.0 - (double) loads / calls));
+            stat.put("avgMicros", calls == 0 ? 0.0 : metric.totalNanos.sum() / 1000.0 / calls);
+            stats.put(name, stat);
+        });
+        return stats;
+    }
+
+    private String key(JoinPoint joinPoint, String keyExpression) {
+        Object[] args = joinPoint.getArgs();
+        if (StrUtil.isBlank(keyExpression)) {
+            return Arrays.stream(args).map(String::valueOf).collect(Collectors.joining(":"));
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodBasedEvaluationContext context =
+                new MethodBasedEvaluationContext(null, method, args, parameterNameDiscoverer);
+        Expression expression = expressions.computeIfAbsent(keyExpression, parser::parseExpression);
+        return String.valueOf(expression.getValue(context));
+    }
+
+    /**
+     * 从缓存反序列化的Result中data为JSONObject/JSONArray，按dataType还原
+     */
+    private static Object restoreData(Object value, Class<?> dataType) {
+        if (!(value instanceof Result) || dataType == Object.class) {
+            return value;
+        }
+        Result result = (Result) value;
+        Object data = result.getData();
+        if (data instanceof JSONArray) {
+            result.setData(((JSONArray) data).toList(dataType));
+        } else if (data instanceof JSONObject) {
+            result.setData(((JSONObject) data).toBean(dataType));
+        }
+        return result;
+    }
+
+    /**
+     * 取出Result中的data按dataType的二进制编解码器缓存，data为null时视为数据不存在
+     */
+    private static Object unwrapData(Result result, Class<?> dataType) {
+        Object data = result.getData();
+        if (data != null && !dataType.isInstance(data)) {
+            throw new IllegalStateException("Result的data不是" + dataType.getName() + "，不能使用二进制编码缓存：" + data.getClass().getName());
+        }
+        return data;
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value == null || (value instanceof Result && !Boolean.TRUE.equals(((Result) value).getSuccess()));
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class Metrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder loads = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+    }
+}
@@ -0,0 +1,24 @@
+package com.dp.utils.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法正常返回后删除Redis缓存，缓存key为keyPrefix + key
+ * 在事务中时事务提交后删除（经CacheInvalidator，包括延迟双删和失败重试）
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisCacheEvict {
+
+    String keyPrefix();
+
+    /**
+     * SpEL表达式，可使用参数名或#p0，为空时使用所有参数以:拼接
+     */
+    String key() default "";
+}
@@ -0,0 +1,54 @@
+package com.dp.utils.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 方法结果缓存到Redis，缓存key为keyPrefix + key
+ * 返回值为Result、dataType有二进制编解码器且dianping.cache.codec为binary时只缓存data（二进制格式，data为null视为数据不存在），
+ * 否则缓存整个返回值（JSON格式）
+ * 返回值为null或失败的Result时视为数据不存在
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisCacheable {
+
+    /**
+     * 缓存key前缀，同时作为统计的缓存名
+     */
+    String keyPrefix();
+
+    /**
+     * SpEL表达式，可使用参数名或#p0，为空时使用所有参数以:拼接
+     */
+    String key() default "";
+
+    CacheStrategy strategy() default CacheStrategy.PASS_THROUGH;
+
+    /**
+     * 过期时间（LOGICAL_EXPIRE为逻辑过期时间，XFETCH会增加随机值）
+     */
+    long ttl();
+
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * 互斥锁key前缀，为空时使用 lock: + keyPrefix
+     */
+    String lockKeyPrefix() default "";
+
+    /**
+     * 返回值为Result时data的类型（列表时为元素类型），用于选择二进制编解码器或把缓存中的JSON还原为对象，保证响应格式与未缓存时一致
+     */
+    Class<?> dataType() default Object.class;
+
+    /**
+     * 命中空值缓存时，返回值类型为Result则返回该错误信息
+     */
+    String emptyMessage() default "数据不存在";
+}
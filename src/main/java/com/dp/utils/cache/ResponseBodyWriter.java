@@ -0,0 +1,69 @@
+package com.dp.utils.cache;
+
+import cn.hutool.crypto.SecureUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 直接输出序列化好的响应体：不再由Jackson序列化返回值，
+ * 请求头If-None-Match与ETag相同时返回304，不返回响应体
+ * 响应体由调用方保存在进程内（如商铺类型快照、热点商铺的本地缓存），不访问Redis
+ */
+@Component
+public class ResponseBodyWriter {
+
+    /**
+     * 与Spring MVC使用同一个ObjectMapper，保证预先序列化的响应体与正常响应一致
+     */
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 序列化响应体并计算ETag
+     */
+    public SerializedBody serialize(Object value) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            return new SerializedBody(body, "\"" + SecureUtil.md5().digestHex(body) + "\"");
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("响应体序列化失败", e);
+        }
+    }
+
+    /**
+     * 不带ETag，直接序列化输出（例如失败结果）
+     */
+    public void write(Object value, HttpServletResponse response) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(value);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    public void write(SerializedBody body, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(body.getEtag(), body.getBody(), request, response);
+    }
+
+    /**
+     * 输出已序列化好的响应体和ETag，If-None-Match命中时返回304
+     */
+    public void write(String etag, byte[] body, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,19 @@
+package com.dp.utils.cache;
+
+import lombok.Getter;
+
+/**
+ * 预先序列化好的响应体及其ETag
+ * 注意：body直接返回内部数组，调用方只能读取
+ */
+@Getter
+public class SerializedBody {
+
+    private final byte[] body;
+    private final String etag;
+
+    public SerializedBody(byte[] body, String etag) {
+        this.body = body;
+        this.etag = etag;
+    }
+}
@@ -0,0 +1,26 @@
+package com.dp.utils.cache;
+
+import com.dp.entity.ShopType;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 商铺类型列表的不可变快照：版本号、类型列表（不可修改）和预先序列化好的响应体及其ETag
+ * 注意：body直接返回内部数组，调用方只能读取
+ */
+@Getter
+public class ShopTypeSnapshot {
+
+    private final long version;
+    private final List<ShopType> types;
+    private final byte[] body;
+    private final String etag;
+
+    public ShopTypeSnapshot(long version, List<ShopType> types, byte[] body, String etag) {
+        this.version = version;
+        this.types = types;
+        this.body = body;
+        this.etag = etag;
+    }
+}
@@ -0,0 +1,63 @@
+package com.dp.utils.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 单飞加载：同一节点上同一个key的并发加载只执行一次，其余线程等待同一个CompletableFuture的结果
+ * 这样每个节点只有一个线程去竞争Redis互斥锁，其他线程不会在sleep中堆积
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行加载
+     *
+     * @param key:     加载的key
+     * @param loader:  实际的加载逻辑，由第一个到达的线程执行
+     * @param timeout: 其他线程的最长等待时间，超时抛出异常
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String key, Supplier<V> loader, long timeout, TimeUnit unit) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            // 1. 已有线程在加载，等待其结果
+            return (V) await(key, inFlight, timeout, unit);
+        }
+        // 2. 当前线程负责加载
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private Object await(String key, CompletableFuture<Object> call, long timeout, TimeUnit unit) {
+        try {
+            return call.get(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待加载被中断：" + key, e);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("等待加载超时：" + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
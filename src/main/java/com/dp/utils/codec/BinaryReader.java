@@ -0,0 +1,95 @@
+package com.dp.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 紧凑二进制格式的读取器，格式见BinaryWriter
+ * 掩码之外的字段（旧版本写入时还没有该字段）读取为null，多出的字段（新版本追加的字段）被忽略，
+ * 因此只在末尾追加字段时不需要修改版本号
+ */
+final class BinaryReader {
+
+    private final byte[] bytes;
+    private final int version;
+    private final int maskLength;
+    private int pos;
+    private int field;
+
+    BinaryReader(byte[] bytes) {
+        if (bytes == null || bytes.length < 2) {
+            throw new IllegalArgumentException("二进制数据格式有误");
+        }
+        this.bytes = bytes;
+        this.version = bytes[0] & 0xFF;
+        this.maskLength = bytes[1] & 0xFF;
+        this.pos = 2 + maskLength;
+    }
+
+    int version() {
+        return version;
+    }
+
+    Long readLong() {
+        return present() ? unzigzag(readVarLong()) : null;
+    }
+
+    Integer readInt() {
+        return present() ? (int) unzigzag(readVarLong()) : null;
+    }
+
+    Double readDouble() {
+        if (!present()) {
+            return null;
+        }
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (bytes[pos++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    Boolean readBoolean() {
+        return present() ? bytes[pos++] != 0 : null;
+    }
+
+    String readString() {
+        if (!present()) {
+            return null;
+        }
+        int length = (int) readVarLong();
+        String value = new String(bytes, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    LocalDateTime readDateTime() {
+        if (!present()) {
+            return null;
+        }
+        long epochSecond = unzigzag(readVarLong());
+        int nano = (int) readVarLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+
+    private boolean present() {
+        int index = field++;
+        return index < maskLength << 3 && (bytes[2 + (index >>> 3)] & (1 << (index & 7))) != 0;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
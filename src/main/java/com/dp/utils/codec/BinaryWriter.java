@@ -0,0 +1,111 @@
+package com.dp.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * 紧凑二进制格式的写入器
+ * 格式：版本号(1字节) + 字段掩码长度(1字节) + 字段掩码 + 按顺序写入的非空字段
+ * 字段掩码第i位表示第i个字段非空，为空的字段不占字节；
+ * 整数使用zigzag + varint，字符串为varint长度 + UTF-8字节，时间为UTC秒数 + 纳秒
+ */
+final class BinaryWriter {
+
+    private byte[] buf;
+    private int pos;
+    private final int maskOffset;
+    private final int maskLength;
+    private int field;
+
+    BinaryWriter(int version, int fieldCount) {
+        this.maskLength = (fieldCount + 7) >>> 3;
+        this.buf = new byte[64];
+        buf[pos++] = (byte) version;
+        buf[pos++] = (byte) maskLength;
+        this.maskOffset = pos;
+        pos += maskLength;
+    }
+
+    void writeLong(Long value) {
+        if (present(value)) {
+            writeVarLong(zigzag(value));
+        }
+    }
+
+    void writeInt(Integer value) {
+        if (present(value)) {
+            writeVarLong(zigzag(value));
+        }
+    }
+
+    void writeDouble(Double value) {
+        if (present(value)) {
+            long bits = Double.doubleToLongBits(value);
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (bits >>> shift);
+            }
+        }
+    }
+
+    void writeBoolean(Boolean value) {
+        if (present(value)) {
+            ensure(1);
+            buf[pos++] = (byte) (value ? 1 : 0);
+        }
+    }
+
+    void writeString(String value) {
+        if (present(value)) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+    }
+
+    void writeDateTime(LocalDateTime value) {
+        if (present(value)) {
+            writeVarLong(zigzag(value.toEpochSecond(ZoneOffset.UTC)));
+            writeVarLong(value.getNano());
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private boolean present(Object value) {
+        int index = field++;
+        if (index >= maskLength << 3) {
+            throw new IllegalStateException("字段数超过声明的数量：" + index);
+        }
+        if (value == null) {
+            return false;
+        }
+        buf[maskOffset + (index >>> 3)] |= (byte) (1 << (index & 7));
+        return true;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensure(int length) {
+        if (pos + length > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + length));
+        }
+    }
+}
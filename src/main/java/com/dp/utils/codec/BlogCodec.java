@@ -0,0 +1,53 @@
+package com.dp.utils.codec;
+
+import com.dp.entity.Blog;
+
+/**
+ * Blog的二进制编解码，字段顺序不可调整，新增字段只能追加在末尾
+ */
+final class BlogCodec implements ValueCodec<Blog> {
+
+    private static final int VERSION = 1;
+    private static final int FIELD_COUNT = 13;
+
+    @Override
+    public byte[] encode(Blog blog) {
+        BinaryWriter writer = new BinaryWriter(VERSION, FIELD_COUNT);
+        writer.writeLong(blog.getId());
+        writer.writeLong(blog.getShopId());
+        writer.writeLong(blog.getUserId());
+        writer.writeString(blog.getIcon());
+        writer.writeString(blog.getName());
+        writer.writeBoolean(blog.getIsLike());
+        writer.writeString(blog.getTitle());
+        writer.writeString(blog.getImages());
+        writer.writeString(blog.getContent());
+        writer.writeInt(blog.getLiked());
+        writer.writeInt(blog.getComments());
+        writer.writeDateTime(blog.getCreateTime());
+        writer.writeDateTime(blog.getUpdateTime());
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Blog decode(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(bytes);
+        if (reader.version() != VERSION) {
+            throw new IllegalArgumentException("不支持的Blog编码版本：" + reader.version());
+        }
+        return new Blog()
+                .setId(reader.readLong())
+                .setShopId(reader.readLong())
+                .setUserId(reader.readLong())
+                .setIcon(reader.readString())
+                .setName(reader.readString())
+                .setIsLike(reader.readBoolean())
+                .setTitle(reader.readString())
+                .setImages(reader.readString())
+                .setContent(reader.readString())
+                .setLiked(reader.readInt())
+                .setComments(reader.readInt())
+                .setCreateTime(reader.readDateTime())
+                .setUpdateTime(reader.readDateTime());
+    }
+}
@@ -0,0 +1,27 @@
+package com.dp.utils.codec;
+
+import cn.hutool.json.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON编解码（hutool），与原来StringRedisTemplate中写入的JSON格式相同
+ */
+public class JsonValueCodec<T> implements ValueCodec<T> {
+
+    private final Class<T> type;
+
+    public JsonValueCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        return JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), type);
+    }
+}
@@ -0,0 +1,66 @@
+package com.dp.utils.codec;
+
+import cn.hutool.json.JSONUtil;
+import com.dp.entity.Shop;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shop的二进制编解码，字段顺序不可调整，新增字段只能追加在末尾
+ * 解码时兼容JSON格式（cache.codec切换为json期间写入的缓存），JSON以'{'开头，不会与版本号冲突
+ */
+final class ShopCodec implements ValueCodec<Shop> {
+
+    private static final int VERSION = 1;
+    private static final int FIELD_COUNT = 16;
+
+    @Override
+    public byte[] encode(Shop shop) {
+        BinaryWriter writer = new BinaryWriter(VERSION, FIELD_COUNT);
+        writer.writeLong(shop.getId());
+        writer.writeString(shop.getName());
+        writer.writeLong(shop.getTypeId());
+        writer.writeString(shop.getImages());
+        writer.writeString(shop.getArea());
+        writer.writeString(shop.getAddress());
+        writer.writeDouble(shop.getX());
+        writer.writeDouble(shop.getY());
+        writer.writeLong(shop.getAvgPrice());
+        writer.writeInt(shop.getSold());
+        writer.writeInt(shop.getComments());
+        writer.writeInt(shop.getScore());
+        writer.writeString(shop.getOpenHours());
+        writer.writeDateTime(shop.getCreateTime());
+        writer.writeDateTime(shop.getUpdateTime());
+        writer.writeDouble(shop.getDistance());
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Shop decode(byte[] bytes) {
+        if (bytes != null && bytes.length > 0 && bytes[0] == '{') {
+            return JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), Shop.class);
+        }
+        BinaryReader reader = new BinaryReader(bytes);
+        if (reader.version() != VERSION) {
+            throw new IllegalArgumentException("不支持的Shop编码版本：" + reader.version());
+        }
+        return new Shop()
+                .setId(reader.readLong())
+                .setName(reader.readString())
+                .setTypeId(reader.readLong())
+                .setImages(reader.readString())
+                .setArea(reader.readString())
+                .setAddress(reader.readString())
+                .setX(reader.readDouble())
+                .setY(reader.readDouble())
+                .setAvgPrice(reader.readLong())
+                .setSold(reader.readInt())
+                .setComments(reader.readInt())
+                .setScore(reader.readInt())
+                .setOpenHours(reader.readString())
+                .setCreateTime(reader.readDateTime())
+                .setUpdateTime(reader.readDateTime())
+                .setDistance(reader.readDouble());
+    }
+}
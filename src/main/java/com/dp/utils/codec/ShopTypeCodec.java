@@ -0,0 +1,39 @@
+package com.dp.utils.codec;
+
+import com.dp.entity.ShopType;
+
+/**
+ * ShopType的二进制编解码，字段顺序不可调整，新增字段只能追加在末尾
+ */
+final class ShopTypeCodec implements ValueCodec<ShopType> {
+
+    private static final int VERSION = 1;
+    private static final int FIELD_COUNT = 6;
+
+    @Override
+    public byte[] encode(ShopType shopType) {
+        BinaryWriter writer = new BinaryWriter(VERSION, FIELD_COUNT);
+        writer.writeLong(shopType.getId());
+        writer.writeString(shopType.getName());
+        writer.writeString(shopType.getIcon());
+        writer.writeInt(shopType.getSort());
+        writer.writeDateTime(shopType.getCreateTime());
+        writer.writeDateTime(shopType.getUpdateTime());
+        return writer.toByteArray();
+    }
+
+    @Override
+    public ShopType decode(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(bytes);
+        if (reader.version() != VERSION) {
+            throw new IllegalArgumentException("不支持的ShopType编码版本：" + reader.version());
+        }
+        return new ShopType()
+                .setId(reader.readLong())
+                .setName(reader.readString())
+                .setIcon(reader.readString())
+                .setSort(reader.readInt())
+                .setCreateTime(reader.readDateTime())
+                .setUpdateTime(reader.readDateTime());
+    }
+}
@@ -0,0 +1,34 @@
+package com.dp.utils.codec;
+
+import com.dp.dto.UserDTO;
+
+/**
+ * UserDTO的二进制编解码，字段顺序不可调整，新增字段只能追加在末尾
+ */
+final class UserDTOCodec implements ValueCodec<UserDTO> {
+
+    private static final int VERSION = 1;
+    private static final int FIELD_COUNT = 3;
+
+    @Override
+    public byte[] encode(UserDTO user) {
+        BinaryWriter writer = new BinaryWriter(VERSION, FIELD_COUNT);
+        writer.writeLong(user.getId());
+        writer.writeString(user.getNickName());
+        writer.writeString(user.getIcon());
+        return writer.toByteArray();
+    }
+
+    @Override
+    public UserDTO decode(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(bytes);
+        if (reader.version() != VERSION) {
+            throw new IllegalArgumentException("不支持的UserDTO编码版本：" + reader.version());
+        }
+        UserDTO user = new UserDTO();
+        user.setId(reader.readLong());
+        user.setNickName(reader.readString());
+        user.setIcon(reader.readString());
+        return user;
+    }
+}
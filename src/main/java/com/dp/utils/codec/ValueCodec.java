@@ -0,0 +1,11 @@
+package com.dp.utils.codec;
+
+/**
+ * 缓存值的编解码器，缓存的存储格式可以按类型替换
+ */
+public interface ValueCodec<T> {
+
+    byte[] encode(T value);
+
+    T decode(byte[] bytes);
+}
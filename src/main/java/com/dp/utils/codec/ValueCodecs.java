@@ -0,0 +1,50 @@
+package com.dp.utils.codec;
+
+import com.dp.dto.UserDTO;
+import com.dp.entity.Blog;
+import com.dp.entity.Shop;
+import com.dp.entity.ShopType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 获取缓存值的编解码器
+ * binary：紧凑二进制格式（默认），json：hutool JSON格式
+ */
+public class ValueCodecs {
+
+    public static final String BINARY = "binary";
+    public static final String JSON = "json";
+
+    private static final Map<Class<?>, ValueCodec<?>> BINARY_CODECS = new HashMap<>();
+
+    static {
+        BINARY_CODECS.put(Shop.class, new ShopCodec());
+        BINARY_CODECS.put(ShopType.class, new ShopTypeCodec());
+        BINARY_CODECS.put(Blog.class, new BlogCodec());
+        BINARY_CODECS.put(UserDTO.class, new UserDTOCodec());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ValueCodec<T> of(Class<T> type, String format) {
+        if (JSON.equals(format)) {
+            return new JsonValueCodec<>(type);
+        }
+        if (!BINARY.equals(format)) {
+            throw new IllegalArgumentException("不支持的缓存编码格式：" + format);
+        }
+        ValueCodec<T> codec = (ValueCodec<T>) BINARY_CODECS.get(type);
+        if (codec == null) {
+            throw new IllegalArgumentException("没有二进制编解码器：" + type.getName());
+        }
+        return codec;
+    }
+
+    /**
+     * 是否有二进制编解码器（没有时只能使用JSON格式）
+     */
+    public static boolean hasBinary(Class<?> type) {
+        return BINARY_CODECS.containsKey(type);
+    }
+}
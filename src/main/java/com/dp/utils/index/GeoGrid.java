@@ -0,0 +1,254 @@
+package com.dp.utils.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存中的网格空间索引：按经纬度把平面划分为固定大小的格子，每个格子保存其中的点
+ * 1. 半径查询只扫描外接矩形覆盖的格子，再用球面距离过滤，距离计算与Redis GEO一致（haversine，相同的地球半径）
+ * 2. 每个格子是写时复制的数组，查询无锁；写操作（新增、移动、删除）串行化
+ *
+ * @param <T> 点上携带的数据
+ */
+public class GeoGrid<T> {
+
+    /**
+     * 与Redis GEO相同的地球半径（米）
+     */
+    static final double EARTH_RADIUS_IN_METERS = 6372797.560856;
+
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_IN_METERS / 180;
+
+    /**
+     * 格子边长（度）
+     */
+    private final double cellDegrees;
+
+    private final Map<Long, Point<T>[]> cells = new ConcurrentHashMap<>();
+
+    private final Map<Long, Point<T>> points = new ConcurrentHashMap<>();
+
+    public GeoGrid(double cellDegrees) {
+        if (cellDegrees <= 0) {
+            throw new IllegalArgumentException("格子边长必须大于0");
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    /**
+     * 新增或移动一个点
+     */
+    public synchronized void put(long id, double x, double y, T value) {
+        remove(id);
+        Point<T> point = new Point<>(id, x, y, value);
+        long cell = cellOf(x, y);
+        Point<T>[] old = cells.get(cell);
+        Point<T>[] updated = newArray(old == null ? 1 : old.length + 1);
+        if (old != null) {
+            System.arraycopy(old, 0, updated, 0, old.length);
+        }
+        updated[updated.length - 1] = point;
+        cells.put(cell, updated);
+        points.put(id, point);
+    }
+
+    public synchronized void remove(long id) {
+        Point<T> point = points.remove(id);
+        if (point == null) {
+            return;
+        }
+        long cell = cellOf(point.x, point.y);
+        Point<T>[] old = cells.get(cell);
+        if (old == null) {
+            return;
+        }
+        if (old.length == 1) {
+            cells.remove(cell);
+            return;
+        }
+        Point<T>[] updated = newArray(old.length - 1);
+        int i = 0;
+        for (Point<T> p : old) {
+            if (p.id != id && i < updated.length) {
+                updated[i++] = p;
+            }
+        }
+        cells.put(cell, updated);
+    }
+
+    public T get(long id) {
+        Point<T> point = points.get(id);
+        return point == null ? null : point.value;
+    }
+
+    public int size() {
+        return points.size();
+    }
+
+    /**
+     * 访问以(x, y)为中心、radius米以内的所有点，顺序不确定
+     */
+    public void forEachWithin(double x, double y, double radius, Visitor<T> visitor) {
+        scan(x, y, radius, (point, a) -> visitor.visit(point.value, toMeters(a)));
+    }
+
+    /**
+     * 查询radius米以内按距离升序的第[offset, offset + limit)个点
+     */
+    public List<Hit<T>> search(double x, double y, double radius, int offset, int limit) {
+        int k = offset + limit;
+        if (limit <= 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+        // 大顶堆只保留距离最近的k个点，堆中比较的是haversine的中间值a（与距离单调），最后再换算成米
+        PriorityQueue<Candidate<T>> heap = new PriorityQueue<>(Math.min(k, 1024), (c1, c2) -> Double.compare(c2.a, c1.a));
+        scan(x, y, radius, (point, a) -> {
+            if (heap.size() < k) {
+                heap.add(new Candidate<>(point, a));
+            } else if (a < heap.peek().a) {
+                heap.poll();
+                heap.add(new Candidate<>(point, a));
+            }
+        });
+        if (heap.size() <= offset) {
+            return Collections.emptyList();
+        }
+        List<Candidate<T>> candidates = new ArrayList<>(heap);
+        candidates.sort((c1, c2) -> Double.compare(c1.a, c2.a));
+        List<Hit<T>> hits = new ArrayList<>(candidates.size() - offset);
+        for (int i = offset; i < candidates.size(); i++) {
+            Candidate<T> candidate = candidates.get(i);
+            hits.add(new Hit<>(candidate.point.value, toMeters(candidate.a)));
+        }
+        return hits;
+    }
+
+    /**
+     * 两点间的球面距离（米），与Redis geohashGetDistance相同
+     */
+    public static double distance(double lon1, double lat1, double lon2, double lat2) {
+        double lat1r = Math.toRadians(lat1);
+        double lat2r = Math.toRadians(lat2);
+        double u = Math.sin((lat2r - lat1r) / 2);
+        double v = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        return toMeters(u * u + Math.cos(lat1r) * Math.cos(lat2r) * v * v);
+    }
+
+    /**
+     * 扫描外接矩形覆盖的格子，只计算haversine的中间值a = sin²(Δlat/2) + cos(lat1)cos(lat2)sin²(Δlon/2)，
+     * 距离 = 2R·asin(√a) 随a单调递增，因此用a和半径换算出的阈值比较即可，省去每个点的asin和sqrt
+     */
+    private void scan(double x, double y, double radius, ScanVisitor<T> visitor) {
+        // 1. 半径换算成经纬度跨度，得到外接矩形覆盖的格子范围
+        double latDelta = radius / METERS_PER_DEGREE;
+        double cos = Math.cos(Math.toRadians(Math.min(Math.abs(y) + latDelta, 89.0)));
+        double lonDelta = radius / (METERS_PER_DEGREE * cos);
+        long minRow = index(y - latDelta);
+        long maxRow = index(y + latDelta);
+        long minCol = index(x - lonDelta);
+        long maxCol = index(x + lonDelta);
+        double maxHalfAngle = Math.min(radius / (2 * EARTH_RADIUS_IN_METERS), Math.PI / 2);
+        double maxA = Math.sin(maxHalfAngle) * Math.sin(maxHalfAngle);
+        double latRad = Math.toRadians(y);
+        double lonRad = Math.toRadians(x);
+        double cosLat = Math.cos(latRad);
+        // 2. 逐个格子扫描，按球面距离过滤
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long col = minCol; col <= maxCol; col++) {
+                Point<T>[] cell = cells.get(key(row, col));
+                if (cell == null) {
+                    continue;
+                }
+                for (Point<T> point : cell) {
+                    double u = Math.sin((point.latRad - latRad) / 2);
+                    double v = Math.sin((point.lonRad - lonRad) / 2);
+                    double a = u * u + cosLat * point.cosLat * v * v;
+                    if (a <= maxA) {
+                        visitor.visit(point, a);
+                    }
+                }
+            }
+        }
+    }
+
+    private static double toMeters(double a) {
+        return 2.0 * EARTH_RADIUS_IN_METERS * Math.asin(Math.sqrt(a));
+    }
+
+    private long cellOf(double x, double y) {
+        return key(index(y), index(x));
+    }
+
+    private long index(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Point<T>[] newArray(int length) {
+        return (Point<T>[]) new Point[length];
+    }
+
+    public interface Visitor<T> {
+        void visit(T value, double distance);
+    }
+
+    private interface ScanVisitor<T> {
+        void visit(Point<T> point, double a);
+    }
+
+    private static class Candidate<T> {
+        private final Point<T> point;
+        private final double a;
+
+        Candidate(Point<T> point, double a) {
+            this.point = point;
+            this.a = a;
+        }
+    }
+
+    public static class Hit<T> {
+        private final T value;
+        private final double distance;
+
+        Hit(T value, double distance) {
+            this.value = value;
+            this.distance = distance;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public double getDistance() {
+            return distance;
+        }
+    }
+
+    private static class Point<T> {
+        private final long id;
+        private final double x;
+        private final double y;
+        private final double latRad;
+        private final double lonRad;
+        private final double cosLat;
+        private final T value;
+
+        Point(long id, double x, double y, T value) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.latRad = Math.toRadians(y);
+            this.lonRad = Math.toRadians(x);
+            this.cosLat = Math.cos(latRad);
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.dp.utils.index;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.Resource;
+
+import static com.dp.utils.redis.RedisConstants.SHOP_CHANGE_CHANNEL;
+
+/**
+ * 商铺变更的事务提交后，把商铺id广播给所有节点（包括本节点），各个内存索引订阅SHOP_CHANGE_CHANNEL后重新加载该商铺
+ */
+@Component
+public class ShopChangeBroadcaster {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 事务提交后广播变更的商铺id，没有事务时直接广播
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onShopChange(ShopChangeEvent event) {
+        stringRedisTemplate.convertAndSend(SHOP_CHANGE_CHANNEL, event.getId().toString());
+    }
+}
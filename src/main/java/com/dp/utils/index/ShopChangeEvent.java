@@ -0,0 +1,26 @@
+package com.dp.utils.index;
+
+import lombok.Getter;
+
+/**
+ * 商铺新增、修改、删除事件：在事务中发布，事务提交后由各个索引重新加载该商铺（查询不到即为已删除）
+ */
+@Getter
+public class ShopChangeEvent {
+
+    private final Long id;
+
+    /**
+     * 变更前的类型，新增时为null；类型改变或删除时用于从旧类型的索引中移除
+     */
+    private final Long oldTypeId;
+
+    public ShopChangeEvent(Long id) {
+        this(id, null);
+    }
+
+    public ShopChangeEvent(Long id, Long oldTypeId) {
+        this.id = id;
+        this.oldTypeId = oldTypeId;
+    }
+}
@@ -0,0 +1,208 @@
+package com.dp.utils.index;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.dp.entity.Shop;
+import com.dp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.dp.utils.redis.RedisConstants.SHOP_CHANGE_CHANNEL;
+
+/**
+ * 商铺的内存空间索引，作为Redis GEO的替代：附近商铺查询不再访问Redis和数据库
+ * 1. 每个typeId一个网格索引（GeoGrid），点上保存商铺投影（ShopProjection，含完整的商铺数据），查询结果直接返回商铺副本并赋值距离
+ * 2. 启动时按id游标分页加载全部商铺，之后定时全量重建（替换整个索引，不阻塞查询），弥补丢失的广播消息
+ * 3. 商铺新增、修改、删除的事务提交后由ShopChangeBroadcaster广播商铺id，所有节点从数据库重新加载该商铺并更新索引
+ * 注意：构建完成之前isReady()返回false，调用方应回退到Redis GEO
+ */
+@Slf4j
+@Component
+public class ShopGeoIndex implements MessageListener {
+
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${dianping.geo.cell-degrees:0.01}")
+    private double cellDegrees;
+
+    @Value("${dianping.geo.rebuild-interval-minutes:30}")
+    private long rebuildIntervalMinutes;
+
+    /**
+     * typeId -> 网格索引，重建时整体替换
+     */
+    private volatile Map<Long, GeoGrid<ShopProjection>> grids = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    /**
+     * 重建期间收到的商铺变更，重建完成后重新应用，避免被旧数据覆盖
+     */
+    private volatile Queue<Long> changedDuringBuild;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("shop-geo-index-", true));
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SHOP_CHANGE_CHANNEL));
+        scheduler.scheduleWithFixedDelay(this::build, 0, rebuildIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 查询typeId类型、radius米以内按距离升序的第[offset, offset + limit)个商铺
+     *
+     * @return 商铺副本，已赋值距离（米）
+     */
+    public List<Shop> search(Long typeId, double x, double y, double radius, int offset, int limit) {
+        GeoGrid<ShopProjection> grid = grids.get(typeId);
+        if (grid == null) {
+            return Collections.emptyList();
+        }
+        List<GeoGrid.Hit<ShopProjection>> hits = grid.search(x, y, radius, offset, limit);
+        List<Shop> shops = new ArrayList<>(hits.size());
+        for (GeoGrid.Hit<ShopProjection> hit : hits) {
+            shops.add(copyOf(hit.getValue().getShop()).setDistance(hit.getDistance()));
+        }
+        return shops;
+    }
+
+    /**
+     * 访问typeId类型、radius米以内的所有商铺投影，访问到的是索引中的对象，不可修改
+     */
+    public void forEachWithin(Long typeId, double x, double y, double radius, GeoGrid.Visitor<ShopProjection> visitor) {
+        GeoGrid<ShopProjection> grid = grids.get(typeId);
+        if (grid != null) {
+            grid.forEachWithin(x, y, radius, visitor);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            Long id = Long.valueOf(body);
+            Queue<Long> changed = changedDuringBuild;
+            if (changed != null) {
+                changed.add(id);
+            }
+            reload(grids, id);
+        } catch (Exception e) {
+            log.error("商铺空间索引更新失败：{}", body, e);
+        }
+    }
+
+    private void build() {
+        try {
+            long begin = System.currentTimeMillis();
+            changedDuringBuild = new ConcurrentLinkedQueue<>();
+            Map<Long, GeoGrid<ShopProjection>> building = new ConcurrentHashMap<>();
+            long last = 0L;
+            long count = 0L;
+            while (true) {
+                // 按id游标分页，避免深分页
+                List<Shop> page = shopMapper.selectList(new LambdaQueryWrapper<Shop>()
+                        .gt(Shop::getId, last)
+                        .orderByAsc(Shop::getId)
+                        .last("limit " + LOAD_PAGE_SIZE));
+                for (Shop shop : page) {
+                    put(building, shop);
+                }
+                count += page.size();
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+                last = page.get(page.size() - 1).getId();
+            }
+            grids = building;
+            // 重新应用重建期间的变更
+            Queue<Long> changed = changedDuringBuild;
+            changedDuringBuild = null;
+            for (Long id : changed) {
+                reload(building, id);
+            }
+            ready = true;
+            log.info("商铺空间索引构建完成，商铺{}个，耗时{}ms", count, System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            // 构建失败时保留旧索引，下个周期重试
+            changedDuringBuild = null;
+            log.error("商铺空间索引构建失败", e);
+        }
+    }
+
+    private void reload(Map<Long, GeoGrid<ShopProjection>> target, Long id) {
+        Shop shop = shopMapper.selectById(id);
+        // 类型可能改变，先从所有类型中删除
+        for (GeoGrid<ShopProjection> grid : target.values()) {
+            grid.remove(id);
+        }
+        if (shop != null) {
+            put(target, shop);
+        }
+    }
+
+    private void put(Map<Long, GeoGrid<ShopProjection>> target, Shop shop) {
+        if (shop.getTypeId() == null || shop.getX() == null || shop.getY() == null) {
+            return;
+        }
+        target.computeIfAbsent(shop.getTypeId(), typeId -> new GeoGrid<>(cellDegrees))
+                .put(shop.getId(), shop.getX(), shop.getY(), new ShopProjection(shop));
+    }
+
+    /**
+     * 索引中的商铺被所有查询共享，返回给调用方的是副本
+     */
+    static Shop copyOf(Shop shop) {
+        return new Shop()
+                .setId(shop.getId())
+                .setName(shop.getName())
+                .setTypeId(shop.getTypeId())
+                .setImages(shop.getImages())
+                .setArea(shop.getArea())
+                .setAddress(shop.getAddress())
+                .setX(shop.getX())
+                .setY(shop.getY())
+                .setAvgPrice(shop.getAvgPrice())
+                .setSold(shop.getSold())
+                .setComments(shop.getComments())
+                .setScore(shop.getScore())
+                .setOpenHours(shop.getOpenHours())
+                .setCreateTime(shop.getCreateTime())
+                .setUpdateTime(shop.getUpdateTime());
+    }
+}
@@ -0,0 +1,251 @@
+package com.dp.utils.index;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.dp.entity.Shop;
+import com.dp.entity.ShopType;
+import com.dp.mapper.ShopMapper;
+import com.dp.mapper.ShopTypeMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.dp.utils.redis.RedisConstants.LOCK_SHOP_GEO_RECONCILE_KEY;
+import static com.dp.utils.redis.RedisConstants.SHOP_GEO_KEY;
+
+/**
+ * 维护Redis GEO索引（shop:geo:{typeId}）与商铺表一致：
+ * 1. 增量同步：商铺新增、修改、删除的事务提交后，新增时GEOADD，类型改变时从旧类型key中ZREM再GEOADD到新类型key，删除时ZREM
+ * 2. 全量对账：定时按id游标分块扫描商铺表，GEOPOS比对后只GEOADD缺失或坐标不一致的商铺；
+ * 再ZSCAN各类型key，ZREM已删除或类型已改变的商铺。每次只处理一块数据，不会替换整个key，不阻塞查询
+ * 多节点通过分布式锁保证同一时间只有一个节点对账
+ */
+@Slf4j
+@Component
+public class ShopGeoRedisSync {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * GEO以52位geohash存储坐标，读出的坐标有约1e-5度以内的误差
+     */
+    private static final double POSITION_TOLERANCE = 1e-5;
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    @Resource
+    private ShopTypeMapper shopTypeMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Value("${dianping.geo.reconcile-interval-minutes:60}")
+    private long reconcileIntervalMinutes;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("shop-geo-reconcile-", true));
+
+    private final LongAdder syncFailures = new LongAdder();
+
+    private volatile Map<String, Object> lastReconcile = new LinkedHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        // 启动时先对账一次，补齐Redis中缺失的商铺
+        scheduler.scheduleWithFixedDelay(this::reconcile, 0, reconcileIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 事务提交后增量同步，失败时只记录，由下一次全量对账修复
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onShopChange(ShopChangeEvent event) {
+        String member = event.getId().toString();
+        try {
+            Shop shop = shopMapper.selectById(event.getId());
+            Long oldTypeId = event.getOldTypeId();
+            // 1. 已删除：从旧类型中移除
+            if (shop == null) {
+                if (oldTypeId != null) {
+                    stringRedisTemplate.opsForZSet().remove(SHOP_GEO_KEY + oldTypeId, member);
+                }
+                return;
+            }
+            // 2. 类型改变：从旧类型中移除
+            if (oldTypeId != null && !oldTypeId.equals(shop.getTypeId())) {
+                stringRedisTemplate.opsForZSet().remove(SHOP_GEO_KEY + oldTypeId, member);
+            }
+            // 3. 新增或更新坐标
+            if (shop.getTypeId() != null && shop.getX() != null && shop.getY() != null) {
+                stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + shop.getTypeId(), new Point(shop.getX(), shop.getY()), member);
+            }
+        } catch (Exception e) {
+            syncFailures.increment();
+            log.error("商铺GEO索引同步失败，等待全量对账修复：{}", member, e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(lastReconcile);
+        stats.put("syncFailures", syncFailures.sum());
+        return stats;
+    }
+
+    private void reconcile() {
+        RLock lock = redissonClient.getLock(LOCK_SHOP_GEO_RECONCILE_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            long begin = System.currentTimeMillis();
+            // 1. 分块扫描商铺表，修复缺失和坐标不一致的商铺
+            Set<Long> typeIds = new HashSet<>();
+            long[] counts = repairMissing(typeIds);
+            // 2. 扫描各类型key，删除多余的商铺
+            for (ShopType type : shopTypeMapper.selectList(null)) {
+                typeIds.add(type.getId());
+            }
+            long removed = 0;
+            for (Long typeId : typeIds) {
+                removed += removeStale(typeId);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("lastReconcileTime", System.currentTimeMillis());
+            result.put("scanned", counts[0]);
+            result.put("repaired", counts[1]);
+            result.put("removed", removed);
+            result.put("costMillis", System.currentTimeMillis() - begin);
+            lastReconcile = result;
+            log.info("商铺GEO索引对账完成：{}", result);
+        } catch (Exception e) {
+            log.error("商铺GEO索引对账失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return [扫描的商铺数, 修复的商铺数]
+     */
+    private long[] repairMissing(Set<Long> typeIds) {
+        long last = 0L;
+        long scanned = 0L;
+        long repaired = 0L;
+        while (true) {
+            List<Shop> chunk = shopMapper.selectList(new LambdaQueryWrapper<Shop>()
+                    .select(Shop::getId, Shop::getTypeId, Shop::getX, Shop::getY)
+                    .gt(Shop::getId, last)
+                    .orderByAsc(Shop::getId)
+                    .last("limit " + CHUNK_SIZE));
+            Map<Long, List<Shop>> byType = chunk.stream()
+                    .filter(shop -> shop.getTypeId() != null && shop.getX() != null && shop.getY() != null)
+                    .collect(Collectors.groupingBy(Shop::getTypeId));
+            for (Map.Entry<Long, List<Shop>> entry : byType.entrySet()) {
+                typeIds.add(entry.getKey());
+                String key = SHOP_GEO_KEY + entry.getKey();
+                List<Shop> shops = entry.getValue();
+                String[] members = shops.stream().map(shop -> shop.getId().toString()).toArray(String[]::new);
+                // GEOPOS批量读取当前坐标，只写入不一致的
+                List<Point> positions = stringRedisTemplate.opsForGeo().position(key, members);
+                Map<String, Point> repairs = new HashMap<>();
+                for (int i = 0; i < shops.size(); i++) {
+                    Shop shop = shops.get(i);
+                    Point position = positions == null ? null : positions.get(i);
+                    if (position == null
+                            || Math.abs(position.getX() - shop.getX()) > POSITION_TOLERANCE
+                            || Math.abs(position.getY() - shop.getY()) > POSITION_TOLERANCE) {
+                        repairs.put(members[i], new Point(shop.getX(), shop.getY()));
+                    }
+                }
+                if (!repairs.isEmpty()) {
+                    stringRedisTemplate.opsForGeo().add(key, repairs);
+                    repaired += repairs.size();
+                }
+            }
+            scanned += chunk.size();
+            if (chunk.size() < CHUNK_SIZE) {
+                return new long[]{scanned, repaired};
+            }
+            last = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    /**
+     * ZSCAN类型key，删除数据库中已不存在或类型已改变的商铺
+     *
+     * @return 删除的商铺数
+     */
+    private long removeStale(Long typeId) {
+        String key = SHOP_GEO_KEY + typeId;
+        long removed = 0;
+        List<String> members = new ArrayList<>(CHUNK_SIZE);
+        try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet()
+                .scan(key, ScanOptions.scanOptions().count(CHUNK_SIZE).build())) {
+            while (cursor.hasNext()) {
+                members.add(cursor.next().getValue());
+                if (members.size() == CHUNK_SIZE) {
+                    removed += removeStale(key, typeId, members);
+                    members.clear();
+                }
+            }
+        }
+        if (!members.isEmpty()) {
+            removed += removeStale(key, typeId, members);
+        }
+        return removed;
+    }
+
+    private long removeStale(String key, Long typeId, List<String> members) {
+        List<Long> ids = members.stream().map(Long::valueOf).collect(Collectors.toList());
+        Map<Long, Long> typeOf = shopMapper.selectList(new LambdaQueryWrapper<Shop>()
+                        .select(Shop::getId, Shop::getTypeId)
+                        .in(Shop::getId, ids))
+                .stream()
+                .filter(shop -> shop.getTypeId() != null)
+                .collect(Collectors.toMap(Shop::getId, Shop::getTypeId));
+        Object[] stale = ids.stream()
+                .filter(id -> !Objects.equals(typeOf.get(id), typeId))
+                .map(String::valueOf)
+                .toArray();
+        if (stale.length == 0) {
+            return 0;
+        }
+        Long count = stringRedisTemplate.opsForZSet().remove(key, stale);
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,381 @@
+package com.dp.utils.index;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.dp.entity.Shop;
+import com.dp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.dp.utils.redis.RedisConstants.SHOP_CHANGE_CHANNEL;
+
+/**
+ * 商铺名称、商圈的内存倒排索引，替代 LIKE '%name%' 的全表扫描
+ * 1. 分词：去掉空白和标点、转小写后，取所有单字和相邻两字（bigram），适合没有空格分隔的中文名称
+ * 2. 倒排表：词 -> 升序的商铺id数组（写时复制，查询无锁）
+ * 3. 查询：关键字的所有bigram（单字关键字取单字）的倒排表求交集，再按相关度排序：
+ * 名称命中多于商圈命中，名称包含完整关键字、以关键字开头、名称更短的更相关
+ * 4. 启动时按id游标分页构建，定时全量重建；订阅SHOP_CHANGE_CHANNEL增量更新
+ * 注意：构建完成之前isReady()返回false，调用方应回退到数据库查询
+ */
+@Slf4j
+@Component
+public class ShopNameIndex implements MessageListener {
+
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    private static final long[] EMPTY = new long[0];
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${dianping.search.rebuild-interval-minutes:30}")
+    private long rebuildIntervalMinutes;
+
+    private volatile Index index = new Index();
+
+    private volatile boolean ready = false;
+
+    private volatile Queue<Long> changedDuringBuild;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("shop-name-index-", true));
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SHOP_CHANGE_CHANNEL));
+        scheduler.scheduleWithFixedDelay(this::build, 0, rebuildIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 按相关度查询第[offset, offset + limit)个商铺id
+     */
+    public List<Long> search(String keyword, int offset, int limit) {
+        String normalized = normalize(keyword);
+        int k = offset + limit;
+        if (normalized.isEmpty() || limit <= 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+        Index current = index;
+        // 1. 关键字的所有词，按倒排表长度升序，从最短的开始求交集
+        Set<String> terms = queryTerms(normalized);
+        long[][] postings = new long[terms.size()][];
+        int i = 0;
+        for (String term : terms) {
+            long[] posting = current.postings.get(term);
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            postings[i++] = posting;
+        }
+        Arrays.sort(postings, Comparator.comparingInt(p -> p.length));
+        // 2. 遍历最短的倒排表，在其他倒排表中二分查找，同时计算相关度，小顶堆保留最相关的k个
+        PriorityQueue<Hit> heap = new PriorityQueue<>(Math.min(k, 1024));
+        for (long id : postings[0]) {
+            boolean matched = true;
+            for (int j = 1; j < postings.length && matched; j++) {
+                matched = Arrays.binarySearch(postings[j], id) >= 0;
+            }
+            if (!matched) {
+                continue;
+            }
+            Doc doc = current.docs.get(id);
+            if (doc == null) {
+                continue;
+            }
+            Hit hit = new Hit(id, relevance(doc, normalized, terms));
+            if (heap.size() < k) {
+                heap.add(hit);
+            } else if (hit.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+        if (heap.size() <= offset) {
+            return Collections.emptyList();
+        }
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(Collections.reverseOrder());
+        List<Long> ids = new ArrayList<>(hits.size() - offset);
+        for (int j = offset; j < hits.size(); j++) {
+            ids.add(hits.get(j).id);
+        }
+        return ids;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            Long id = Long.valueOf(body);
+            Queue<Long> changed = changedDuringBuild;
+            if (changed != null) {
+                changed.add(id);
+            }
+            reload(index, id);
+        } catch (Exception e) {
+            log.error("商铺名称索引更新失败：{}", body, e);
+        }
+    }
+
+    private void build() {
+        try {
+            long begin = System.currentTimeMillis();
+            changedDuringBuild = new ConcurrentLinkedQueue<>();
+            // 商铺按id升序加载，直接追加即为有序的倒排表
+            Map<String, LongList> building = new HashMap<>();
+            Index built = new Index();
+            long last = 0L;
+            long count = 0L;
+            while (true) {
+                List<Shop> page = shopMapper.selectList(new LambdaQueryWrapper<Shop>()
+                        .select(Shop::getId, Shop::getName, Shop::getArea)
+                        .gt(Shop::getId, last)
+                        .orderByAsc(Shop::getId)
+                        .last("limit " + LOAD_PAGE_SIZE));
+                for (Shop shop : page) {
+                    Doc doc = new Doc(shop);
+                    built.docs.put(shop.getId(), doc);
+                    for (String term : doc.terms()) {
+                        building.computeIfAbsent(term, t -> new LongList()).add(shop.getId());
+                    }
+                }
+                count += page.size();
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+                last = page.get(page.size() - 1).getId();
+            }
+            building.forEach((term, ids) -> built.postings.put(term, ids.toArray()));
+            index = built;
+            Queue<Long> changed = changedDuringBuild;
+            changedDuringBuild = null;
+            for (Long id : changed) {
+                reload(built, id);
+            }
+            ready = true;
+            log.info("商铺名称索引构建完成，商铺{}个，词{}个，耗时{}ms", count, built.postings.size(), System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            changedDuringBuild = null;
+            log.error("商铺名称索引构建失败", e);
+        }
+    }
+
+    private void reload(Index target, Long id) {
+        Shop shop = shopMapper.selectById(id);
+        synchronized (target) {
+            Doc old = target.docs.remove(id);
+            if (old != null) {
+                for (String term : old.terms()) {
+                    target.remove(term, id);
+                }
+            }
+            if (shop != null) {
+                Doc doc = new Doc(shop);
+                target.docs.put(id, doc);
+                for (String term : doc.terms()) {
+                    target.add(term, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 相关度：名称中命中的词权重为2，只在商圈中命中的词权重为1；
+     * 名称包含完整关键字加2，以关键字开头再加1；名称越短，关键字占比越高，相关度越高
+     */
+    private static double relevance(Doc doc, String keyword, Set<String> terms) {
+        double score = 0;
+        for (String term : terms) {
+            score += doc.name.contains(term) ? 2 : 1;
+        }
+        score /= terms.size();
+        int position = doc.name.indexOf(keyword);
+        if (position >= 0) {
+            score += position == 0 ? 3 : 2;
+            score += (double) keyword.length() / doc.name.length();
+        }
+        return score;
+    }
+
+    /**
+     * 查询词：单字关键字取单字，否则取所有bigram
+     */
+    private static Set<String> queryTerms(String normalized) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (normalized.length() == 1) {
+            terms.add(normalized);
+            return terms;
+        }
+        for (int i = 0; i + 1 < normalized.length(); i++) {
+            terms.add(normalized.substring(i, i + 2));
+        }
+        return terms;
+    }
+
+    /**
+     * 文档的索引词：所有单字和bigram
+     */
+    private static Set<String> indexTerms(String normalized) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            terms.add(normalized.substring(i, i + 1));
+            if (i + 1 < normalized.length()) {
+                terms.add(normalized.substring(i, i + 2));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 去掉空白和标点，转小写
+     */
+    static String normalize(String text) {
+        if (StrUtil.isBlank(text)) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 文档只保存规范化后的名称和商圈，索引词在写入时现算，不常驻内存
+     */
+    private static class Doc {
+        private final String name;
+        private final String area;
+
+        Doc(Shop shop) {
+            this.name = normalize(shop.getName());
+            this.area = normalize(shop.getArea());
+        }
+
+        Set<String> terms() {
+            // 名称和商圈分别分词，不跨字段组合bigram
+            Set<String> terms = indexTerms(name);
+            terms.addAll(indexTerms(area));
+            return terms;
+        }
+    }
+
+    private static class Index {
+        private final Map<String, long[]> postings = new ConcurrentHashMap<>();
+        private final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+
+        /**
+         * 写时复制：插入到有序数组中
+         */
+        private void add(String term, long id) {
+            long[] old = postings.getOrDefault(term, EMPTY);
+            int position = Arrays.binarySearch(old, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            long[] updated = new long[old.length + 1];
+            System.arraycopy(old, 0, updated, 0, position);
+            updated[position] = id;
+            System.arraycopy(old, position, updated, position + 1, old.length - position);
+            postings.put(term, updated);
+        }
+
+        private void remove(String term, long id) {
+            long[] old = postings.get(term);
+            int position = old == null ? -1 : Arrays.binarySearch(old, id);
+            if (position < 0) {
+                return;
+            }
+            if (old.length == 1) {
+                postings.remove(term);
+                return;
+            }
+            long[] updated = new long[old.length - 1];
+            System.arraycopy(old, 0, updated, 0, position);
+            System.arraycopy(old, position + 1, updated, position, old.length - position - 1);
+            postings.put(term, updated);
+        }
+    }
+
+    private static class Hit implements Comparable<Hit> {
+        private final long id;
+        private final double relevance;
+
+        Hit(long id, double relevance) {
+            this.id = id;
+            this.relevance = relevance;
+        }
+
+        /**
+         * 相关度高、id小的更大，保证翻页时顺序稳定
+         */
+        @Override
+        public int compareTo(Hit other) {
+            int result = Double.compare(relevance, other.relevance);
+            return result != 0 ? result : Long.compare(other.id, id);
+        }
+    }
+
+    /**
+     * 构建时追加id用的可增长数组，避免装箱
+     */
+    private static class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.dp.utils.index;
+
+import com.dp.dto.NearbyShopQuery;
+import com.dp.entity.Shop;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 附近商铺的多条件查询：在内存空间索引的商铺投影上筛选、排序，不访问Redis和数据库
+ * 1. 筛选：人均价格范围、最低评分、当前是否营业
+ * 2. 排序：距离、评分、销量归一化到[0, 1]后加权求和（销量取对数，避免少数爆款压过其他因素），得分高的在前
+ * 3. 分页：小顶堆只保留得分最高的offset + limit个商铺
+ */
+@Component
+public class ShopNearbySearcher {
+
+    private static final int MAX_SCORE = 50;
+
+    @Resource
+    private ShopGeoIndex shopGeoIndex;
+
+    @Value("${dianping.geo.nearby.default-radius:5000}")
+    private double defaultRadius;
+
+    @Value("${dianping.geo.nearby.max-radius:20000}")
+    private double maxRadius;
+
+    @Value("${dianping.geo.nearby.distance-weight:0.5}")
+    private double distanceWeight;
+
+    @Value("${dianping.geo.nearby.score-weight:0.3}")
+    private double scoreWeight;
+
+    @Value("${dianping.geo.nearby.sold-weight:0.2}")
+    private double soldWeight;
+
+    @Value("${dianping.geo.nearby.sold-normalizer:10000}")
+    private double soldNormalizer;
+
+    public boolean isReady() {
+        return shopGeoIndex.isReady();
+    }
+
+    /**
+     * 查询第[offset, offset + limit)个商铺
+     *
+     * @return 商铺副本，已赋值距离（米）
+     */
+    public List<Shop> search(NearbyShopQuery query, int offset, int limit) {
+        int k = offset + limit;
+        if (limit <= 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+        double radius = query.getRadius() == null ? defaultRadius : Math.min(query.getRadius(), maxRadius);
+        if (!(radius > 0)) {
+            return Collections.emptyList();
+        }
+        long minPrice = query.getMinPrice() == null ? Long.MIN_VALUE : query.getMinPrice();
+        long maxPrice = query.getMaxPrice() == null ? Long.MAX_VALUE : query.getMaxPrice();
+        int minScore = query.getMinScore() == null ? Integer.MIN_VALUE : query.getMinScore();
+        boolean openNow = Boolean.TRUE.equals(query.getOpenNow());
+        LocalTime now = LocalTime.now();
+        int minuteOfDay = now.getHour() * 60 + now.getMinute();
+        double logSoldNormalizer = Math.log1p(soldNormalizer);
+        // 小顶堆，堆顶是当前保留的得分最低的商铺
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(Math.min(k, 1024));
+        shopGeoIndex.forEachWithin(query.getTypeId(), query.getX(), query.getY(), radius, (shop, distance) -> {
+            // 1. 筛选
+            if (shop.getAvgPrice() < minPrice || shop.getAvgPrice() > maxPrice || shop.getScore() < minScore) {
+                return;
+            }
+            if (openNow && !shop.isOpenAt(minuteOfDay)) {
+                return;
+            }
+            // 2. 计算得分
+            Candidate candidate = new Candidate(shop, distance, rank(shop, distance, radius, logSoldNormalizer));
+            if (heap.size() < k) {
+                heap.add(candidate);
+            } else if (candidate.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        });
+        if (heap.size() <= offset) {
+            return Collections.emptyList();
+        }
+        // 3. 按得分降序排列后截取当前页
+        List<Candidate> candidates = new ArrayList<>(heap);
+        candidates.sort(Collections.reverseOrder());
+        List<Shop> shops = new ArrayList<>(candidates.size() - offset);
+        for (int i = offset; i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            shops.add(ShopGeoIndex.copyOf(candidate.shop.getShop()).setDistance(candidate.distance));
+        }
+        return shops;
+    }
+
+    /**
+     * 得分：距离、评分、销量归一化到[0, 1]后加权求和
+     *
+     * @param logSoldNormalizer: ln(1 + sold-normalizer)，销量达到sold-normalizer时销量得分为1
+     */
+    double rank(ShopProjection shop, double distance, double radius, double logSoldNormalizer) {
+        return distanceWeight * (1 - Math.min(distance, radius) / radius)
+                + scoreWeight * Math.min(1.0, (double) shop.getScore() / MAX_SCORE)
+                + soldWeight * Math.min(1.0, Math.log1p(Math.max(shop.getSold(), 0)) / logSoldNormalizer);
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        private final ShopProjection shop;
+        private final double distance;
+        private final double rank;
+
+        Candidate(ShopProjection shop, double distance, double rank) {
+            this.shop = shop;
+            this.distance = distance;
+            this.rank = rank;
+        }
+
+        /**
+         * 得分高、距离近、id小的更大，保证翻页时顺序稳定
+         */
+        @Override
+        public int compareTo(Candidate other) {
+            int result = Double.compare(rank, other.rank);
+            if (result == 0) {
+                result = Double.compare(other.distance, distance);
+            }
+            return result != 0 ? result : Long.compare(other.shop.getShop().getId(), shop.getShop().getId());
+        }
+    }
+}
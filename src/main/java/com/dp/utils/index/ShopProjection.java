@@ -0,0 +1,103 @@
+package com.dp.utils.index;
+
+import cn.hutool.core.util.StrUtil;
+import com.dp.entity.Shop;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 商铺在内存索引中的投影：把筛选、排序用到的字段预先转换成基本类型（营业时间解析为分钟区间），
+ * 查询时不再解析字符串、拆箱；shop是完整的商铺数据，用于返回结果
+ */
+@Getter
+public class ShopProjection {
+
+    private static final int MINUTES_OF_DAY = 24 * 60;
+
+    private final Shop shop;
+    private final long avgPrice;
+    private final int score;
+    private final int sold;
+
+    /**
+     * 营业时间的分钟区间[start0, end0, start1, end1...]，跨零点的区间end小于start；null表示无法解析
+     */
+    private final int[] openMinutes;
+
+    public ShopProjection(Shop shop) {
+        this.shop = shop;
+        this.avgPrice = shop.getAvgPrice() == null ? 0 : shop.getAvgPrice();
+        this.score = shop.getScore() == null ? 0 : shop.getScore();
+        this.sold = shop.getSold() == null ? 0 : shop.getSold();
+        this.openMinutes = parseOpenHours(shop.getOpenHours());
+    }
+
+    /**
+     * 在一天中的第minuteOfDay分钟是否营业，营业时间无法解析时返回false
+     */
+    public boolean isOpenAt(int minuteOfDay) {
+        if (openMinutes == null) {
+            return false;
+        }
+        for (int i = 0; i < openMinutes.length; i += 2) {
+            int start = openMinutes[i];
+            int end = openMinutes[i + 1];
+            if (start == end) {
+                // 开始等于结束，例如 00:00-00:00，视为全天营业
+                return true;
+            }
+            boolean open = start < end
+                    ? minuteOfDay >= start && minuteOfDay < end
+                    // 跨零点，例如 18:00-02:00
+                    : minuteOfDay >= start || minuteOfDay < end;
+            if (open) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析营业时间，例如 10:00-22:00、10:00-14:00,17:00-02:00
+     */
+    static int[] parseOpenHours(String openHours) {
+        if (StrUtil.isBlank(openHours)) {
+            return null;
+        }
+        List<Integer> minutes = new ArrayList<>();
+        for (String range : openHours.trim().split("[,，;；\\s]+")) {
+            String[] parts = range.split("[-~～至]");
+            if (parts.length != 2) {
+                return null;
+            }
+            int start = parseMinute(parts[0]);
+            int end = parseMinute(parts[1]);
+            if (start < 0 || end < 0) {
+                return null;
+            }
+            minutes.add(start);
+            minutes.add(end);
+        }
+        return minutes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int parseMinute(String time) {
+        String[] parts = time.trim().split("[:：]");
+        if (parts.length != 2) {
+            return -1;
+        }
+        try {
+            int hour = Integer.parseInt(parts[0].trim());
+            int minute = Integer.parseInt(parts[1].trim());
+            if (hour < 0 || hour > 24 || minute < 0 || minute > 59) {
+                return -1;
+            }
+            // 24:00 即当天结束
+            return Math.min(hour * 60 + minute, MINUTES_OF_DAY);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.dp.utils.index;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.dp.entity.Shop;
+import com.dp.mapper.ShopMapper;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.dp.utils.redis.RedisConstants.SHOP_CHANGE_CHANNEL;
+
+/**
+ * 商铺名称、商圈的前缀联想
+ * 1. 快照：所有候选词（商铺名称、商圈，同名合并）按规范化后的文本排序，保存为平行数组，前缀对应数组中连续的一段，二分查找定位
+ * 2. 前缀长度不超过precomputed-prefix-length时，构建时预先算好该前缀得分最高的K个候选（相当于字典树浅层节点上的top-K），查询直接返回；
+ * 更长的前缀对应的区间很短，查询时在区间内用堆取top-K
+ * 3. 得分：销量 x 评分，商圈取其中商铺得分之和
+ * 4. 快照不可变，后台重建完成后整体替换，重建期间查询不受影响；商铺变更后标记为脏，定时检查并重建
+ */
+@Slf4j
+@Component
+public class ShopSuggester implements MessageListener {
+
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    public static final String TYPE_SHOP = "shop";
+    public static final String TYPE_AREA = "area";
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${dianping.search.suggest.top-k:10}")
+    private int topK;
+
+    @Value("${dianping.search.suggest.precomputed-prefix-length:2}")
+    private int precomputedPrefixLength;
+
+    @Value("${dianping.search.suggest.refresh-interval-seconds:60}")
+    private long refreshIntervalSeconds;
+
+    private volatile Snapshot snapshot;
+
+    private volatile boolean dirty = true;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("shop-suggester-", true));
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SHOP_CHANGE_CHANNEL));
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 查询前缀得分最高的limit个候选，limit不超过top-k
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        Snapshot current = snapshot;
+        String normalized = ShopNameIndex.normalize(prefix);
+        if (current == null || normalized.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int[] indexes = current.topK(normalized, topK);
+        List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, indexes.length));
+        for (int i = 0; i < indexes.length && i < limit; i++) {
+            suggestions.add(current.suggestions[indexes[i]]);
+        }
+        return suggestions;
+    }
+
+    /**
+     * 快照的条目数、商铺数和估算的内存占用
+     */
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (current == null) {
+            stats.put("ready", false);
+            return stats;
+        }
+        stats.put("ready", true);
+        stats.put("entries", current.keys.length);
+        stats.put("shops", current.shops);
+        stats.put("precomputedPrefixes", current.precomputed.size());
+        stats.put("memoryBytes", current.memoryBytes);
+        stats.put("bytesPerShop", current.shops == 0 ? 0 : current.memoryBytes / current.shops);
+        stats.put("buildMillis", current.buildMillis);
+        return stats;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        dirty = true;
+    }
+
+    private void refresh() {
+        if (!dirty) {
+            return;
+        }
+        // 先清除标记，重建期间的变更会让下一次检查再次重建
+        dirty = false;
+        try {
+            snapshot = build();
+            log.info("商铺联想词快照构建完成：{}", stats());
+        } catch (Exception e) {
+            dirty = true;
+            log.error("商铺联想词快照构建失败", e);
+        }
+    }
+
+    private Snapshot build() {
+        long begin = System.currentTimeMillis();
+        // 1. 按id游标分页加载，同名的商铺、同一商圈合并为一个候选
+        Map<String, Suggestion> candidates = new HashMap<>();
+        long last = 0L;
+        long shops = 0L;
+        while (true) {
+            List<Shop> page = shopMapper.selectList(new LambdaQueryWrapper<Shop>()
+                    .select(Shop::getId, Shop::getName, Shop::getArea, Shop::getSold, Shop::getScore)
+                    .gt(Shop::getId, last)
+                    .orderByAsc(Shop::getId)
+                    .last("limit " + LOAD_PAGE_SIZE));
+            for (Shop shop : page) {
+                long weight = (long) Math.max(shop.getSold() == null ? 0 : shop.getSold(), 1)
+                        * Math.max(shop.getScore() == null ? 0 : shop.getScore(), 1);
+                if (StrUtil.isNotBlank(shop.getName())) {
+                    // 同名商铺取得分最高的一家
+                    candidates.merge(TYPE_SHOP + ":" + shop.getName(), new Suggestion(shop.getName(), TYPE_SHOP, shop.getId(), weight),
+                            (old, added) -> added.weight > old.weight ? added : old);
+                }
+                if (StrUtil.isNotBlank(shop.getArea())) {
+                    candidates.merge(TYPE_AREA + ":" + shop.getArea(), new Suggestion(shop.getArea(), TYPE_AREA, null, weight),
+                            (old, added) -> new Suggestion(old.text, TYPE_AREA, null, old.weight + added.weight));
+                }
+            }
+            shops += page.size();
+            if (page.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            last = page.get(page.size() - 1).getId();
+        }
+        // 2. 按规范化文本排序
+        List<Map.Entry<String, Suggestion>> entries = new ArrayList<>(candidates.size());
+        for (Suggestion suggestion : candidates.values()) {
+            String key = ShopNameIndex.normalize(suggestion.text);
+            if (!key.isEmpty()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, suggestion));
+            }
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        String[] keys = new String[entries.size()];
+        Suggestion[] suggestions = new Suggestion[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            keys[i] = entries.get(i).getKey();
+            suggestions[i] = entries.get(i).getValue();
+        }
+        Snapshot built = new Snapshot(keys, suggestions, shops, precomputedPrefixLength);
+        // 3. 预计算短前缀的top-K
+        Map<String, List<Integer>> byPrefix = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            for (int length = 1; length <= precomputedPrefixLength && length <= keys[i].length(); length++) {
+                byPrefix.computeIfAbsent(keys[i].substring(0, length), p -> new ArrayList<>()).add(i);
+            }
+        }
+        byPrefix.forEach((prefix, indexes) -> built.precomputed.put(prefix, built.select(indexes.stream().mapToInt(Integer::intValue).toArray(), topK)));
+        built.memoryBytes = built.estimateMemory();
+        built.buildMillis = System.currentTimeMillis() - begin;
+        return built;
+    }
+
+    @Getter
+    public static class Suggestion {
+        private final String text;
+        private final String type;
+        /**
+         * 商铺id，商圈为null
+         */
+        private final Long shopId;
+        /**
+         * 排序用的得分，不返回给前端
+         */
+        @Getter(AccessLevel.NONE)
+        private final long weight;
+
+        Suggestion(String text, String type, Long shopId, long weight) {
+            this.text = text;
+            this.type = type;
+            this.shopId = shopId;
+            this.weight = weight;
+        }
+    }
+
+    private static class Snapshot {
+        private final String[] keys;
+        private final Suggestion[] suggestions;
+        private final long shops;
+        private final int precomputedPrefixLength;
+        private final Map<String, int[]> precomputed = new HashMap<>();
+        private long memoryBytes;
+        private long buildMillis;
+
+        Snapshot(String[] keys, Suggestion[] suggestions, long shops, int precomputedPrefixLength) {
+            this.keys = keys;
+            this.suggestions = suggestions;
+            this.shops = shops;
+            this.precomputedPrefixLength = precomputedPrefixLength;
+        }
+
+        int[] topK(String prefix, int k) {
+            int[] cached = precomputed.get(prefix);
+            if (cached != null) {
+                return cached;
+            }
+            if (prefix.length() <= precomputedPrefixLength) {
+                // 短前缀没有预计算结果，说明没有候选
+                return new int[0];
+            }
+            // 前缀对应的区间：[第一个 >= prefix 的位置, 第一个 >= prefix + Character.MAX_VALUE 的位置)
+            int from = lowerBound(prefix);
+            int to = lowerBound(prefix + Character.MAX_VALUE);
+            int[] range = new int[to - from];
+            for (int i = from; i < to; i++) {
+                range[i - from] = i;
+            }
+            return select(range, k);
+        }
+
+        /**
+         * 从indexes中选出得分最高的k个，按得分降序
+         */
+        int[] select(int[] indexes, int k) {
+            if (k <= 0) {
+                return new int[0];
+            }
+            PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, Math.min(k, indexes.length)),
+                    (a, b) -> Long.compare(suggestions[a].weight, suggestions[b].weight));
+            for (int index : indexes) {
+                if (heap.size() < k) {
+                    heap.add(index);
+                } else if (suggestions[index].weight > suggestions[heap.peek()].weight) {
+                    heap.poll();
+                    heap.add(index);
+                }
+            }
+            int[] result = new int[heap.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = heap.poll();
+            }
+            return result;
+        }
+
+        private int lowerBound(String key) {
+            int position = Arrays.binarySearch(keys, key);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        /**
+         * 估算快照占用的内存（64位JVM、开启压缩指针）：
+         * String对象24B + char数组16B + 2B/字符，Suggestion对象32B，引用4B，int数组16B + 4B/元素，HashMap条目约32B
+         */
+        long estimateMemory() {
+            long bytes = 16 + 4L * keys.length + 16 + 4L * suggestions.length;
+            for (int i = 0; i < keys.length; i++) {
+                bytes += 40 + 2L * keys[i].length();
+                // 规范化后与原文相同时JVM仍然是两个对象，这里按两个估算
+                bytes += 32 + 40 + 2L * suggestions[i].text.length();
+                if (suggestions[i].shopId != null) {
+                    bytes += 16;
+                }
+            }
+            for (Map.Entry<String, int[]> entry : precomputed.entrySet()) {
+                bytes += 32 + 40 + 2L * entry.getKey().length() + 16 + 4L * entry.getValue().length;
+            }
+            return bytes;
+        }
+    }
+}
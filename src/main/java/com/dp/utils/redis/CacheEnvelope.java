@@ -0,0 +1,60 @@
+package com.dp.utils.redis;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 带过期信息的缓存值：格式(1字节) + 过期时间(8字节) + 附加字段(8字节) + 按ValueCodec编码的数据
+ * 附加字段：逻辑过期为提前刷新时间，XFetch为重建耗时
+ * 过期信息放在固定长度的头部，读取时不需要先解析外层对象再转换data，数据只解码一次
+ * 格式字节不会是'{'，原来以JSON保存的数据读取为null，由调用方按不存在或需要刷新处理
+ */
+final class CacheEnvelope {
+
+    static final byte LOGICAL_EXPIRE = 1;
+    static final byte XFETCH = 2;
+
+    private static final int HEADER_LENGTH = 1 + 8 + 8;
+
+    private final long expireAt;
+    private final long extra;
+    private final byte[] data;
+
+    private CacheEnvelope(long expireAt, long extra, byte[] data) {
+        this.expireAt = expireAt;
+        this.extra = extra;
+        this.data = data;
+    }
+
+    static byte[] encode(byte format, long expireAt, long extra, byte[] data) {
+        return ByteBuffer.allocate(HEADER_LENGTH + data.length)
+                .put(format)
+                .putLong(expireAt)
+                .putLong(extra)
+                .put(data)
+                .array();
+    }
+
+    /**
+     * @return 格式不匹配（包括旧的JSON格式）时返回null
+     */
+    static CacheEnvelope decode(byte format, byte[] bytes) {
+        if (bytes == null || bytes.length <= HEADER_LENGTH || bytes[0] != format) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, HEADER_LENGTH - 1);
+        return new CacheEnvelope(buffer.getLong(), buffer.getLong(), Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length));
+    }
+
+    long expireAt() {
+        return expireAt;
+    }
+
+    long extra() {
+        return extra;
+    }
+
+    byte[] data() {
+        return data;
+    }
+}
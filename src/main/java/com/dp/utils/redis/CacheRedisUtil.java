@@ -1,16 +1,19 @@
 package com.dp.utils.redis;
 
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.dp.utils.cache.CacheRebuildExecutor;
+import com.dp.utils.cache.SingleFlight;
+import com.dp.utils.codec.JsonValueCodec;
+import com.dp.utils.codec.ValueCodec;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import javax.annotation.Resource;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -22,7 +25,34 @@ public class CacheRedisUtil {
 
     private final StringRedisTemplate stringRedisTemplate;
 
-    private final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    /**
+     * 缓存值按ValueCodec编码后的原始字节读写，JSON编码时与StringRedisTemplate写入的内容相同
+     */
+    @Resource
+    private RedisTemplate<String, byte[]> bytesRedisTemplate;
+
+    @Resource
+    private CacheRebuildExecutor cacheRebuildExecutor;
+
+    /**
+     * 逻辑过期时间过去多少比例后开始异步刷新（提前刷新）
+     */
+    @Value("${dianping.cache.refresh-ahead-ratio:0.8}")
+    private double refreshAheadRatio;
+
+    /**
+     * XFetch提前重建的激进程度，越大越早重建
+     */
+    @Value("${dianping.cache.xfetch-beta:1.0}")
+    private double xfetchBeta;
+
+    /**
+     * TTL随机增加的最大比例，避免同时写入的缓存同时过期
+     */
+    @Value("${dianping.cache.ttl-jitter-ratio:0.1}")
+    private double ttlJitterRatio;
+
+    private final SingleFlight singleFlight = new SingleFlight();
 
     public CacheRedisUtil(StringRedisTemplate stringRedisTemplate) {
         this.stringRedisTemplate = stringRedisTemplate;
@@ -39,12 +69,20 @@ public class CacheRedisUtil {
      * 方法2：将任意Java对象序列化成JSON并存储在String类型的key中，并可设置逻辑过期时间，用于解决缓存击穿问题
      */
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
-        // 设置逻辑过期
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        setWithLogicalExpire(key, value, new JsonValueCodec<>(Object.class), time, unit);
+    }
+
+    /**
+     * 方法2：按codec编码并设置逻辑过期时间，逻辑过期时间和提前刷新时间写在数据前的固定头部中（见CacheEnvelope）
+     */
+    public <R> void setWithLogicalExpire(String key, R value, ValueCodec<R> codec, Long time, TimeUnit unit) {
+        // 设置逻辑过期时间和提前刷新时间
+        long now = System.currentTimeMillis();
+        long ttlMillis = unit.toMillis(time);
+        byte[] bytes = CacheEnvelope.encode(CacheEnvelope.LOGICAL_EXPIRE, now + ttlMillis,
+                now + (long) (ttlMillis * refreshAheadRatio), codec.encode(value));
         // 写入redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        bytesRedisTemplate.opsForValue().set(key, bytes);
     }
 
     /**
@@ -58,27 +96,36 @@ public class CacheRedisUtil {
      * @param unit:       时间单位
      */
     public <R, ID> R queryWithPassThrough(String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithPassThrough(keyPrefix, id, new JsonValueCodec<>(type), dbFallback, time, unit);
+    }
+
+    /**
+     * 方法3：同上，缓存值按codec编解码
+     */
+    public <R, ID> R queryWithPassThrough(String keyPrefix, ID id, ValueCodec<R> codec, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         // 拼接key
         String key = keyPrefix + id;
         // 查询redis
-        String json = stringRedisTemplate.opsForValue().get(key);
+        byte[] bytes = bytesRedisTemplate.opsForValue().get(key);
         // 判断redis
-        if (StrUtil.isNotBlank(json)) {
-            // 存在，就反序列化
-            return JSONUtil.toBean(json, type);
-        }
-        if (json != null) {
+        if (bytes != null && bytes.length == 0) {
             // 空值
             return null;
         }
+        // 存在，就反序列化（无法解码的旧数据按未命中处理）
+        R value = decodeOrNull(key, codec, bytes);
+        if (value != null) {
+            return value;
+        }
         // 查询数据库结果
         R dbData = dbFallback.apply(id);
         if (dbData == null) {
             // 不存在，则设置空值到redis中，过期时间比正常数据短
-            this.set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            bytesRedisTemplate.opsForValue().set(key, new byte[0], CACHE_NULL_TTL, TimeUnit.MINUTES);
+            return null;
         }
         // 数据库中存在数据，将信息写入redis，并设置超时时间，避免redis缓存过多数据
-        this.set(key, dbData, time, unit);
+        bytesRedisTemplate.opsForValue().set(key, codec.encode(dbData), time, unit);
         return dbData;
     }
 
@@ -90,61 +137,74 @@ public class CacheRedisUtil {
      * @param lockKeyPrefix: 互斥锁前缀
      * @param type:          返回值类型
      * @param dbFallback:    函数式接口，数据库查询结果（根据ID查询到一个为R类型的对象）【可类比匿名对象】
-     * @param time:          缓存逻辑过期时间
+     * @param time:          缓存逻辑过期时间，过去refresh-ahead-ratio比例后开始异步刷新
      * @param unit:          时间单位
      */
     public <R, ID> R queryWithLogicalExpire(String keyPrefix, String lockKeyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithLogicalExpire(keyPrefix, lockKeyPrefix, id, new JsonValueCodec<>(type), dbFallback, time, unit);
+    }
+
+    /**
+     * 方法4：同上，缓存值按codec编解码，先读固定头部中的刷新时间，数据只解码一次
+     */
+    public <R, ID> R queryWithLogicalExpire(String keyPrefix, String lockKeyPrefix, ID id, ValueCodec<R> codec, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String key = keyPrefix + id;
         // 从redis中查询数据
-        String json = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isBlank(json)) {
+        byte[] bytes = bytesRedisTemplate.opsForValue().get(key);
+        if (bytes == null || bytes.length == 0) {
             // 缓存中不存在
             return null;
         }
-        // 缓存中存在，判断是否过期
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        LocalDateTime expireTime = redisData.getExpireTime();
-        R value = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-        if (expireTime.isAfter(LocalDateTime.now())) {
-            // 未过期
+        CacheEnvelope envelope = CacheEnvelope.decode(CacheEnvelope.LOGICAL_EXPIRE, bytes);
+        R value = envelope == null ? null : decodeOrNull(key, codec, envelope.data());
+        if (value == null) {
+            // 旧格式（JSON）或无法解码：异步按当前格式重写，本次按不存在处理
+            refreshAsync(key, lockKeyPrefix + id, id, codec, dbFallback, time, unit);
+            return null;
+        }
+        // 缓存中存在，判断是否到达刷新时间
+        if (!needRefresh(envelope)) {
             return value;
         }
-        // 过期，需要缓存重建
-        String lockKey = lockKeyPrefix + id;
-        if (tryLock(lockKey)) {
-            // 获取到同步锁
-            // DoubleCheck
-            String json1 = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isBlank(json1)) {
-                return null;
-            }
-            RedisData redisData1 = JSONUtil.toBean(json1, RedisData.class);
-            LocalDateTime expireTime1 = redisData1.getExpireTime();
-            if (expireTime1.isAfter(LocalDateTime.now())) {
-                return JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        // 到达刷新时间（或已过期），提交异步刷新，返回当前数据
+        refreshAsync(key, lockKeyPrefix + id, id, codec, dbFallback, time, unit);
+        return value;
+    }
+
+    /**
+     * 提前刷新：到达刷新时间即需要刷新，格式不匹配的数据也需要刷新
+     */
+    private static boolean needRefresh(CacheEnvelope envelope) {
+        return envelope == null || envelope.extra() <= System.currentTimeMillis();
+    }
+
+    /**
+     * 异步刷新：本节点按key去重，多节点之间用互斥锁保证只有一个节点查询数据库
+     */
+    private <R, ID> void refreshAsync(String key, String lockKey, ID id, ValueCodec<R> codec, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        cacheRebuildExecutor.submit(key, () -> {
+            if (!tryLock(lockKey)) {
+                // 其他节点正在刷新
+                return;
             }
-            // 使用线程池进行缓存重建
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    // 查询数据库
-                    R r = dbFallback.apply(id);
-                    if (r == null) {
-                        return;
-                    }
-                    // 模拟缓存重构时间
-                    Thread.sleep(10000);
-                    // 更新redis中数据过期时间
-                    this.setWithLogicalExpire(key, r, time, unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    // 释放锁
-                    unlock(lockKey);
+            try {
+                // DoubleCheck：其他节点可能刚刚刷新完成
+                byte[] bytes = bytesRedisTemplate.opsForValue().get(key);
+                if (!needRefresh(CacheEnvelope.decode(CacheEnvelope.LOGICAL_EXPIRE, bytes))) {
+                    return;
                 }
-            });
-        }
-        // 返回旧数据
-        return value;
+                // 查询数据库，数据已被删除时同时删除缓存
+                R r = dbFallback.apply(id);
+                if (r == null) {
+                    bytesRedisTemplate.delete(key);
+                    return;
+                }
+                this.setWithLogicalExpire(key, r, codec, time, unit);
+            } finally {
+                // 释放锁
+                unlock(lockKey);
+            }
+        });
     }
 
     /**
@@ -159,45 +219,176 @@ public class CacheRedisUtil {
      * @param unit:          时间单位
      */
     public <ID, R> R queryWithMutex(String keyPrefix, String lockKeyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithMutex(keyPrefix, lockKeyPrefix, id, new JsonValueCodec<>(type), dbFallback, time, unit);
+    }
+
+    /**
+     * 方法4：同上，缓存值按codec编解码
+     */
+    public <ID, R> R queryWithMutex(String keyPrefix, String lockKeyPrefix, ID id, ValueCodec<R> codec, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String key = keyPrefix + id;
         // 从redis中查询数据
-        String json = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(json)) {
-            return JSONUtil.toBean(json, type);
-        }
-        if (json != null) {
+        byte[] bytes = bytesRedisTemplate.opsForValue().get(key);
+        if (bytes != null && bytes.length == 0) {
             // 空值
             return null;
         }
-        // 尝试加互斥锁
-        R data = null;
-        String lockKey = lockKeyPrefix + id;
-        if (tryLock(lockKey)) {
-            try {
-                data = dbFallback.apply(id);
-                if (data == null) {
-                    // 不存在，将空值写入redis
-                    stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                    return null;
+        R value = decodeOrNull(key, codec, bytes);
+        if (value != null) {
+            return value;
+        }
+        // 缓存重建：同一节点对同一key的并发请求合并为一次，只有一个线程竞争互斥锁
+        return singleFlight.execute(key, () -> rebuildWithMutex(key, lockKeyPrefix + id, id, codec, dbFallback, time, unit),
+                CACHE_REBUILD_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 互斥锁重建缓存：未获取到锁时循环等待其他节点重建完成，超过等待时间抛出异常
+     */
+    private <ID, R> R rebuildWithMutex(String key, String lockKey, ID id, ValueCodec<R> codec, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        long deadline = System.currentTimeMillis() + CACHE_REBUILD_WAIT_MILLIS;
+        while (true) {
+            if (tryLock(lockKey)) {
+                try {
+                    // DoubleCheck（无法解码的旧数据仍需重建）
+                    byte[] bytes = bytesRedisTemplate.opsForValue().get(key);
+                    if (bytes != null && bytes.length == 0) {
+                        return null;
+                    }
+                    R value = decodeOrNull(key, codec, bytes);
+                    if (value != null) {
+                        return value;
+                    }
+                    R data = dbFallback.apply(id);
+                    if (data == null) {
+                        // 不存在，将空值写入redis
+                        bytesRedisTemplate.opsForValue().set(key, new byte[0], CACHE_NULL_TTL, TimeUnit.MINUTES);
+                        return null;
+                    }
+                    // 存在，写入redis
+                    bytesRedisTemplate.opsForValue().set(key, codec.encode(data), time, unit);
+                    return data;
+                } finally {
+                    // 释放互斥锁
+                    unlock(lockKey);
                 }
-                // 存在，写入redis
-                this.set(key, data, time, unit);
-            } finally {
-                // 释放互斥锁
-                unlock(lockKey);
             }
-        } else {
-            // 未抢到锁，睡眠后重试
+            // 未抢到锁，短暂等待后查询缓存
+            if (System.currentTimeMillis() >= deadline) {
+                throw new RuntimeException("缓存重建超时：" + key);
+            }
             try {
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, lockKeyPrefix, id, type, dbFallback, time, unit);
+                Thread.sleep(CACHE_REBUILD_POLL_MILLIS);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            byte[] bytes = bytesRedisTemplate.opsForValue().get(key);
+            if (bytes != null && bytes.length == 0) {
+                return null;
+            }
+            R value = decodeOrNull(key, codec, bytes);
+            if (value != null) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * 方法5：根据指定Key查询缓存，并反序列化为指定类型，利用概率提前过期（XFetch）解决缓存雪崩问题，不加锁
+     * 缓存中保存数据、重建耗时delta和过期时间，读取时满足 now - delta * beta * ln(random) >= expireAt 则提前重建，
+     * 越接近过期、重建越慢，提前重建的概率越大，同一时间只有少数请求会去查询数据库
+     *
+     * @param keyPrefix:  key前缀
+     * @param id:         唯一标识
+     * @param type:       返回值类型
+     * @param dbFallback: 函数式接口，数据库查询结果（根据ID查询到一个为R类型的对象）
+     * @param time:       缓存过期时间（会增加随机值）
+     * @param unit:       时间单位
+     */
+    public <R, ID> R queryWithXFetch(String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithXFetch(keyPrefix, id, new JsonValueCodec<>(type), dbFallback, time, unit);
+    }
+
+    /**
+     * 方法5：同上，缓存值按codec编解码，过期时间和重建耗时写在数据前的固定头部中，数据只解码一次
+     */
+    public <R, ID> R queryWithXFetch(String keyPrefix, ID id, ValueCodec<R> codec, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        // 1. 查询redis
+        byte[] bytes = bytesRedisTemplate.opsForValue().get(key);
+        if (bytes != null && bytes.length == 0) {
+            // 空值
+            return null;
+        }
+        // 2. 判断是否需要提前重建（切换格式前写入的JSON数据没有头部，按未命中处理）
+        CacheEnvelope envelope = CacheEnvelope.decode(CacheEnvelope.XFETCH, bytes);
+        if (envelope != null && !shouldRefreshEarly(System.currentTimeMillis(), envelope.expireAt(), envelope.extra(),
+                xfetchBeta, ThreadLocalRandom.current().nextDouble())) {
+            R value = decodeOrNull(key, codec, envelope.data());
+            if (value != null) {
+                return value;
             }
         }
+        // 3. 缓存不存在或被选中提前重建：查询数据库并记录耗时
+        long begin = System.currentTimeMillis();
+        R data = dbFallback.apply(id);
+        long delta = System.currentTimeMillis() - begin;
+        if (data == null) {
+            bytesRedisTemplate.opsForValue().set(key, new byte[0], CACHE_NULL_TTL, TimeUnit.MINUTES);
+            return null;
+        }
+        setWithXFetch(key, data, codec, delta, time, unit);
         return data;
     }
 
+    /**
+     * XFetch判断：now - delta * beta * ln(1 - random) >= expireAt 时提前重建
+     * 距离过期还剩remaining毫秒时，提前重建的概率为 exp(-remaining / (delta * beta))，已过期时必定重建
+     *
+     * @param delta:  重建耗时（毫秒）
+     * @param random: [0, 1)的随机数
+     */
+    public static boolean shouldRefreshEarly(long now, long expireAt, long delta, double beta, double random) {
+        double gap = -delta * beta * Math.log(1 - random);
+        return now + gap >= expireAt;
+    }
+
+    /**
+     * 写入XFetch缓存：过期时间增加随机值，逻辑过期时间与redis过期时间一致
+     *
+     * @param delta: 重建耗时（毫秒）
+     */
+    public <R> void setWithXFetch(String key, R value, ValueCodec<R> codec, long delta, Long time, TimeUnit unit) {
+        long ttlMillis = jitterMillis(time, unit);
+        byte[] bytes = CacheEnvelope.encode(CacheEnvelope.XFETCH, System.currentTimeMillis() + ttlMillis,
+                Math.max(delta, 1L), codec.encode(value));
+        bytesRedisTemplate.opsForValue().set(key, bytes, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * TTL增加[0, ttl-jitter-ratio)比例的随机值，返回毫秒
+     */
+    public long jitterMillis(Long time, TimeUnit unit) {
+        long ttlMillis = unit.toMillis(time);
+        return ttlMillis + (long) (ttlMillis * ttlJitterRatio * ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * 解码缓存值，不存在或无法解码（编码格式切换前写入的数据）时返回null，由调用方按未命中重建
+     */
+    private static <R> R decodeOrNull(String key, ValueCodec<R> codec, byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return codec.decode(bytes);
+        } catch (RuntimeException e) {
+            log.warn("缓存值无法解码，按未命中处理：{}", key, e);
+            return null;
+        }
+    }
+
     public boolean tryLock(String key) {
         Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", LOCK_SHOP_TTL, TimeUnit.SECONDS);
         return BooleanUtil.isTrue(flag);
@@ -0,0 +1,15 @@
+package com.dp.utils.redis;
+
+/**
+ * 全局唯一ID生成器
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成全局唯一ID
+     *
+     * @param keyPrefix 业务标识
+     * @return 全局唯一ID
+     */
+    Long nextId(String keyPrefix);
+}
@@ -8,18 +8,44 @@ public class RedisConstants {
 
     public static final String LOCK_SHOP_KEY = "lock_shop:";
     public static final String CACHE_SHOP_KEY = "cache_shop:";
+    /**
+     * 按cache.codec编码（默认二进制）的商铺缓存，与cache_shop:中的JSON格式缓存（逻辑过期等写法）分开存放
+     */
+    public static final String CACHE_SHOP_CODEC_KEY = "cache_shop:v2:";
+    public static final String CACHE_SHOP_HOT_KEY = "cache_shop_hot:";
+    public static final String LOCK_SHOP_HOT_KEY = "lock_shop_hot:";
     public static final Long LOCK_SHOP_TTL = 30L;
     public static final Long CACHE_SHOP_TTL = 30L;
+    public static final Long CACHE_SHOP_LOGICAL_TTL = 20L;
     public static final Long CACHE_NULL_TTL = 2L;
+    public static final Long CACHE_REBUILD_WAIT_MILLIS = 3000L;
+    public static final Long CACHE_REBUILD_POLL_MILLIS = 20L;
+    public static final String SHOP_LOCAL_CACHE = "shop";
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public static final String CACHE_INVALIDATE_STREAM = "stream.cache.invalidate";
+    public static final String BLOOM_KEY = "bloom:";
+    public static final String BLOOM_ADD_CHANNEL = "bloom:add";
 
-    public static final String SHOP_TYPE_KEY = "shop_type";
-    public static final String SHOP_TYPE_LOCK_KEY = "lock_shop_type";
+    public static final String CACHE_VOUCHER_SHOP_KEY = "cache_voucher_shop:";
+    public static final long CACHE_VOUCHER_SHOP_TTL = 1L;
+    public static final String CACHE_USER_KEY = "cache_user:";
+    public static final long CACHE_USER_TTL = 30L;
+
+    public static final String SHOP_TYPE_VERSION_KEY = "shop_type:version";
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_VOUCHER_KEY = "seckill:voucher:";
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:sold-out";
+    public static final String SECKILL_RESTOCK_CHANNEL = "seckill:restock";
     public static final String LOCK_ORDER_KEY = "lock:order:";
     public static final String BLOG_LIKED_KEY = "blog_liked:";
     public static final String FOLLOW_KEY = "follow:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    public static final String SHOP_GEO_CURSOR_KEY = "shop:geo:cursor:";
+    public static final Long SHOP_GEO_CURSOR_TTL = 5L;
+    public static final String SHOP_CHANGE_CHANNEL = "shop:change";
+    public static final String LOCK_SHOP_GEO_RECONCILE_KEY = "lock:shop:geo:reconcile";
     public static final String USER_SIGN_KEY = "sign:";
 }
 
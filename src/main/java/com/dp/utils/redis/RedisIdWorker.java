@@ -1,5 +1,7 @@
 package com.dp.utils.redis;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
@@ -7,12 +9,17 @@ import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 基于Redis的ID生成器
  */
+@Slf4j
 @Component
-public class RedisIdWorker {
+public class RedisIdWorker implements IdGenerator {
 
     /**
      * 开始时间戳
@@ -22,10 +29,31 @@ public class RedisIdWorker {
      * 序列号位数
      */
     private static final int COUNT_BITS = 32;
+    /**
+     * 日期格式（线程安全，复用同一个实例）
+     */
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 号段模式：每个节点一次从Redis中取一段序列号（INCRBY step），在内存中分配
+     */
+    @Value("${dianping.id.segment-enabled:false}")
+    private boolean segmentEnabled;
+
+    /**
+     * 号段长度
+     */
+    @Value("${dianping.id.segment-step:1000}")
+    private int segmentStep;
+
+    /**
+     * 号段模式下各个自增key（icr:业务:日期）当前使用的号段
+     */
+    private final ConcurrentMap<String, SegmentBuffer> segmentBuffers = new ConcurrentHashMap<>();
+
     /**
      * ID：1位（符号位） + 31位（时间戳） + 32位（序列号）
      * 一种业务不能用同一个自增key，若数据量庞大否则会超出32位（序列号）
@@ -33,6 +61,7 @@ public class RedisIdWorker {
      *
      * @param keyPrefix: 不同业务
      */
+    @Override
     public Long nextId(String keyPrefix) {
         // 1. 生成时间戳
         LocalDateTime now = LocalDateTime.now();
@@ -40,12 +69,104 @@ public class RedisIdWorker {
         long timeStamp = nowSecond - BEGIN_TIMESTAMP;
         // 2. 生成序列号
         // 2.1 获取当前日期，精确到天
-        String date = now.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
-        // 2.2 自增长
-        Long count = stringRedisTemplate.opsForValue().increment("icr:" + keyPrefix + ":" + date);
+        String date = now.format(DATE_FORMATTER);
+        String key = "icr:" + keyPrefix + ":" + date;
+        // 2.2 自增长（号段模式下从内存号段中分配，号段用完才访问Redis）
+        long count = segmentEnabled ? nextFromSegment(keyPrefix, key) : stringRedisTemplate.opsForValue().increment(key);
         // 3. 拼接并返回
         // 1位（符号位） + 31位（时间戳） + 32位（序列号）
         return timeStamp << COUNT_BITS | count;
     }
-}
 
+    private long nextFromSegment(String keyPrefix, String key) {
+        SegmentBuffer buffer = segmentBuffers.get(keyPrefix);
+        if (buffer == null || !buffer.key.equals(key)) {
+            // 第一次使用或日期变化，换成当天的自增key（旧日期的号段直接丢弃）
+            SegmentBuffer newBuffer = new SegmentBuffer(key);
+            buffer = buffer == null
+                    ? segmentBuffers.computeIfAbsent(keyPrefix, k -> newBuffer)
+                    : (segmentBuffers.replace(keyPrefix, buffer, newBuffer) ? newBuffer : segmentBuffers.get(keyPrefix));
+        }
+        return buffer.next();
+    }
+
+    /**
+     * 从Redis中申请一段序列号：INCRBY key step，返回 [end - step + 1, end]
+     * 不同节点拿到的号段互不重叠，所以生成的ID在集群中唯一
+     */
+    private Segment allocateSegment(String key) {
+        Long end = stringRedisTemplate.opsForValue().increment(key, segmentStep);
+        return new Segment(end - segmentStep + 1, end);
+    }
+
+    /**
+     * 一段连续的序列号 [start, end]，cursor为下一个待分配的序列号
+     */
+    private static class Segment {
+        private final long end;
+        private final long prefetchAt;
+        private final AtomicLong cursor;
+
+        private Segment(long start, long end) {
+            this.end = end;
+            // 用掉80%时预取下一个号段
+            this.prefetchAt = start + (end - start + 1) * 4 / 5;
+            this.cursor = new AtomicLong(start);
+        }
+    }
+
+    /**
+     * 双号段缓冲：当前号段无锁分配，快用完时异步预取下一个号段，当前号段用完时切换
+     */
+    private class SegmentBuffer {
+        private final String key;
+        private volatile Segment current;
+        private volatile CompletableFuture<Segment> next;
+
+        private SegmentBuffer(String key) {
+            this.key = key;
+        }
+
+        private long next() {
+            while (true) {
+                Segment segment = current;
+                if (segment != null) {
+                    long value = segment.cursor.getAndIncrement();
+                    if (value <= segment.end) {
+                        if (value == segment.prefetchAt) {
+                            prefetch();
+                        }
+                        return value;
+                    }
+                }
+                // 当前号段已用完（或还未申请），切换号段，只在这里加锁
+                switchSegment(segment);
+            }
+        }
+
+        private void prefetch() {
+            synchronized (this) {
+                if (next == null) {
+                    next = CompletableFuture.supplyAsync(() -> allocateSegment(key));
+                }
+            }
+        }
+
+        private synchronized void switchSegment(Segment exhausted) {
+            if (current != exhausted) {
+                // 其他线程已经切换过了
+                return;
+            }
+            Segment segment = null;
+            if (next != null) {
+                try {
+                    segment = next.join();
+                } catch (Exception e) {
+                    log.error("预取号段失败，key：{}", key, e);
+                }
+                next = null;
+            }
+            current = segment != null ? segment : allocateSegment(key);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.dp.utils.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.dp.utils.redis.RedisConstants.SECKILL_RESTOCK_CHANNEL;
+import static com.dp.utils.redis.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+
+/**
+ * 本地售罄登记表：优惠券售罄后，后续请求直接在内存中拒绝，不再访问Redis
+ * 某个节点的lua脚本第一次返回库存不足时，通过Redis发布订阅广播给所有节点
+ * 1. 登记只在ttl-millis内有效，过期后下一个请求重新经过lua脚本判断：补库存广播丢失或与售罄登记乱序时，最多拒绝ttl-millis
+ * 2. 执行脚本早于本节点最近一次补库存的请求不再登记售罄，避免补库存前读到的库存不足把优惠券重新标记为售罄
+ */
+@Slf4j
+@Component
+public class SeckillSoldOutRegistry implements MessageListener {
+
+    /**
+     * 优惠券id -> 登记售罄的时间
+     */
+    private final ConcurrentMap<Long, Long> soldOutVouchers = new ConcurrentHashMap<>();
+
+    /**
+     * 优惠券id -> 本节点最近一次收到补库存的时间
+     */
+    private final ConcurrentMap<Long, Long> restockTimes = new ConcurrentHashMap<>();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${dianping.seckill.sold-out.ttl-millis:1000}")
+    private long ttlMillis;
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SECKILL_RESTOCK_CHANNEL));
+    }
+
+    /**
+     * 优惠券是否已售罄（只查本地内存），登记过期时移除并返回false
+     */
+    public boolean isSoldOut(Long voucherId) {
+        Long markTime = soldOutVouchers.get(voucherId);
+        if (markTime == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - markTime < ttlMillis) {
+            return true;
+        }
+        soldOutVouchers.remove(voucherId, markTime);
+        return false;
+    }
+
+    /**
+     * 登记优惠券已售罄，本节点新登记时广播给其他节点
+     *
+     * @param requestTime: 请求执行lua脚本之前的时间，早于最近一次补库存时忽略
+     */
+    public void markSoldOut(Long voucherId, long requestTime) {
+        Long restockTime = restockTimes.get(voucherId);
+        if (restockTime != null && requestTime <= restockTime) {
+            return;
+        }
+        if (mark(voucherId)) {
+            log.info("优惠券已售罄：{}", voucherId);
+            stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId.toString());
+        }
+    }
+
+    /**
+     * 取消售罄登记（优惠券补充了库存），并广播给所有节点
+     */
+    public void clearSoldOut(Long voucherId) {
+        restock(voucherId);
+        stringRedisTemplate.convertAndSend(SECKILL_RESTOCK_CHANNEL, voucherId.toString());
+    }
+
+    /**
+     * 接收其他节点的售罄、补库存广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            Long voucherId = Long.valueOf(body);
+            if (SECKILL_RESTOCK_CHANNEL.equals(channel)) {
+                restock(voucherId);
+            } else {
+                mark(voucherId);
+            }
+        } catch (NumberFormatException e) {
+            log.error("售罄广播消息有误：{}", body);
+        }
+    }
+
+    /**
+     * @return 是否为新登记（之前没有登记或已过期）
+     */
+    private boolean mark(Long voucherId) {
+        long now = System.currentTimeMillis();
+        Long previous = soldOutVouchers.put(voucherId, now);
+        return previous == null || now - previous >= ttlMillis;
+    }
+
+    private void restock(Long voucherId) {
+        restockTimes.put(voucherId, System.currentTimeMillis());
+        soldOutVouchers.remove(voucherId);
+    }
+}
@@ -0,0 +1,38 @@
+package com.dp.utils.redis;
+
+import com.dp.service.VoucherService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 启动时为旧版本创建的秒杀优惠券（redis中只有seckill:stock:{id}）补建seckill:voucher:{id} hash
+ * 下单的lua脚本只读取hash，补建放在启动时完成，下单路径上不查询数据库；已有hash的优惠券不会被覆盖，多个节点同时执行没有影响
+ */
+@Slf4j
+@Component
+public class SeckillVoucherMigrationRunner implements ApplicationRunner {
+
+    @Resource
+    private VoucherService voucherService;
+
+    @Value("${dianping.seckill.migrate-legacy:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int migrated = voucherService.migrateLegacySeckillVouchers();
+            log.info("旧版本秒杀优惠券补建完成，补建{}个", migrated);
+        } catch (Exception e) {
+            log.error("旧版本秒杀优惠券补建失败", e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.dp.utils.redis;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 本地雪花算法ID生成器：启动时从Redis租用worker id，之后生成ID不需要任何网络请求
+ * 配置dianping.id.generator=snowflake时启用
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "dianping.id.generator", havingValue = "snowflake")
+public class SnowflakeIdWorker implements IdGenerator {
+
+    /**
+     * 开始时间戳（毫秒），与RedisIdWorker一致：2022-01-01 00:00:00 UTC
+     */
+    private static final long BEGIN_TIMESTAMP = 1640995200000L;
+    /**
+     * ID：1位（符号位） + 41位（毫秒时间戳） + 10位（worker id） + 12位（毫秒内序列号）
+     */
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    /**
+     * 可以等待的最大时钟回拨（毫秒），超过时沿用上次的时间戳继续分配
+     */
+    private static final long MAX_BACKWARD_MS = 5;
+    /**
+     * worker id租约有效期（秒），每1/3有效期续约一次
+     */
+    private static final long LEASE_SECONDS = 30;
+    private static final String WORKER_KEY_PREFIX = "id:worker:";
+    private static final String WORKER_LAST_KEY_PREFIX = "id:worker:last:";
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+
+    static {
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("renewworker.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String instanceId = UUID.randomUUID().toString(true);
+
+    private final ScheduledExecutorService heartbeatExecutor =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("id-worker-lease-", true));
+
+    /**
+     * 当前租用的worker id，-1表示租约已失效
+     */
+    private volatile long workerId = -1;
+    /**
+     * 租约到期时间，到期前续约不成功则停止生成ID，防止worker id被其他实例占用后生成重复ID
+     */
+    private volatile long leaseDeadline;
+    private long lastTimestamp = -1;
+    private long sequence = 0;
+    private boolean rollbackLogged = false;
+
+    @PostConstruct
+    private void start() {
+        if (!acquireWorkerId()) {
+            throw new IllegalStateException("没有可用的worker id");
+        }
+        long period = LEASE_SECONDS / 3;
+        heartbeatExecutor.scheduleAtFixedRate(this::heartbeat, period, period, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void stop() {
+        heartbeatExecutor.shutdownNow();
+        long id = workerId;
+        if (id >= 0) {
+            // 记录最后使用的时间戳后释放租约
+            heartbeat();
+            stringRedisTemplate.delete(WORKER_KEY_PREFIX + id);
+        }
+    }
+
+    @Override
+    public synchronized Long nextId(String keyPrefix) {
+        long worker = workerId;
+        long now = System.currentTimeMillis();
+        if (worker < 0 || now > leaseDeadline) {
+            throw new IllegalStateException("worker id租约已失效");
+        }
+        if (now < lastTimestamp) {
+            // 时钟回拨：回拨较小时等待时钟追上
+            long offset = lastTimestamp - now;
+            if (offset <= MAX_BACKWARD_MS) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(offset));
+                now = System.currentTimeMillis();
+            }
+            if (now < lastTimestamp) {
+                // 回拨较大：沿用上次的时间戳继续分配（逻辑时钟只增不减），不会生成重复ID
+                if (!rollbackLogged) {
+                    log.warn("检测到时钟回拨{}ms，沿用上次的时间戳生成ID", lastTimestamp - now);
+                    rollbackLogged = true;
+                }
+                now = lastTimestamp;
+            } else {
+                rollbackLogged = false;
+            }
+        }
+        if (now == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // 本毫秒序列号已用完，借用下一毫秒
+                now = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = now;
+        return (now - BEGIN_TIMESTAMP) << (WORKER_BITS + SEQUENCE_BITS) | worker << SEQUENCE_BITS | sequence;
+    }
+
+    /**
+     * 租用一个空闲的worker id：SET id:worker:{id} instanceId NX EX 30
+     * 从随机位置开始尝试，减少多个实例同时启动时的冲突
+     */
+    private boolean acquireWorkerId() {
+        int start = ThreadLocalRandom.current().nextInt(MAX_WORKER_ID + 1);
+        for (int i = 0; i <= MAX_WORKER_ID; i++) {
+            int id = (start + i) & MAX_WORKER_ID;
+            long leaseAt = System.currentTimeMillis();
+            Boolean success = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(WORKER_KEY_PREFIX + id, instanceId, LEASE_SECONDS, TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(success)) {
+                // 上一个使用该worker id的实例最后的时间戳，本实例不会生成比它更早的ID
+                String last = stringRedisTemplate.opsForValue().get(WORKER_LAST_KEY_PREFIX + id);
+                synchronized (this) {
+                    if (last != null) {
+                        lastTimestamp = Math.max(lastTimestamp, Long.parseLong(last));
+                    }
+                    leaseDeadline = leaseAt + TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+                    workerId = id;
+                }
+                log.info("租用worker id成功：{}", id);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 续约worker id，续约失败（例如长时间GC导致租约过期被其他实例占用）则重新租用
+     */
+    private void heartbeat() {
+        long id = workerId;
+        try {
+            long last;
+            synchronized (this) {
+                last = lastTimestamp;
+            }
+            if (id >= 0) {
+                long renewAt = System.currentTimeMillis();
+                Long success = stringRedisTemplate.execute(RENEW_SCRIPT,
+                        Arrays.asList(WORKER_KEY_PREFIX + id, WORKER_LAST_KEY_PREFIX + id),
+                        instanceId, String.valueOf(LEASE_SECONDS), String.valueOf(last));
+                if (success != null && success == 1) {
+                    leaseDeadline = renewAt + TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+                    return;
+                }
+                log.error("worker id续约失败：{}", id);
+                workerId = -1;
+            }
+            if (!acquireWorkerId()) {
+                log.error("没有可用的worker id");
+            }
+        } catch (Exception e) {
+            log.error("worker id续约异常", e);
+        }
+    }
+}
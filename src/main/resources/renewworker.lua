@@ -0,0 +1,14 @@
+local key = KEYS[1]; -- worker id租约的key
+local lastKey = KEYS[2]; -- 该worker id最后使用的时间戳的key
+local instanceId = ARGV[1]; -- 当前实例标识
+local leaseTime = ARGV[2]; -- 租约有效期
+local lastTimestamp = ARGV[3]; -- 当前实例最后使用的时间戳
+-- 判断租约是否还属于当前实例
+if (redis.call('get', key) ~= instanceId) then
+    -- 不属于，续约失败
+    return 0;
+end;
+-- 续约，并记录最后使用的时间戳（下一个使用该worker id的实例不会生成比它更早的ID）
+redis.call('expire', key, leaseTime);
+redis.call('set', lastKey, lastTimestamp);
+return 1;
@@ -0,0 +1,11 @@
+-- 旧版本创建的秒杀优惠券只有库存key（seckill:stock:{id}），没有hash，启动时补建
+-- KEYS[1]：优惠券信息key（seckill:voucher:{id}） KEYS[2]：旧版本的库存key（seckill:stock:{id}）
+-- ARGV[1]：开始时间（毫秒时间戳） ARGV[2]：结束时间（毫秒时间戳） ARGV[3]：数据库中的库存
+if (redis.call('exists', KEYS[1]) == 1) then
+    -- 已存在（新版本创建或已补建），不覆盖
+    return 0
+end
+-- 库存优先取旧库存key中的剩余库存（旧脚本在其上扣减），没有时取数据库库存
+local stock = redis.call('get', KEYS[2]) or ARGV[3]
+redis.call('hset', KEYS[1], 'begin', ARGV[1], 'end', ARGV[2], 'stock', stock)
+return 1
@@ -0,0 +1,179 @@
+package com.dp;
+
+import com.dp.utils.index.GeoGrid;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.domain.geo.GeoReference;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 附近商铺查询的基准测试：内存网格索引（GeoGrid）与Redis GEOSEARCH对比每次查询的耗时
+ * 内存索引部分不依赖Spring容器和Redis，可直接运行；Redis部分使用系统属性或application.yml中的spring.redis配置，连接不上时跳过
+ */
+@Slf4j
+public class GeoIndexBenchmarkTest {
+
+    private static final int SHOPS = 100000;
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 10000;
+    private static final double RADIUS = 5000;
+    private static final int PAGE_SIZE = 5;
+
+    /**
+     * 商铺随机分布在杭州主城区约50km x 50km的范围内
+     */
+    private static final double MIN_X = 120.0;
+    private static final double MIN_Y = 30.0;
+    private static final double SPAN = 0.5;
+
+    private static final String BENCHMARK_KEY = "benchmark:shop:geo";
+
+    private final double[] xs = new double[SHOPS];
+    private final double[] ys = new double[SHOPS];
+
+    {
+        Random random = new Random(1);
+        for (int i = 0; i < SHOPS; i++) {
+            xs[i] = MIN_X + random.nextDouble() * SPAN;
+            ys[i] = MIN_Y + random.nextDouble() * SPAN;
+        }
+    }
+
+    @Test
+    void memoryIndexMatchesBruteForce() {
+        GeoGrid<Integer> grid = buildGrid();
+        Random random = new Random(2);
+        for (int q = 0; q < 100; q++) {
+            double x = MIN_X + random.nextDouble() * SPAN;
+            double y = MIN_Y + random.nextDouble() * SPAN;
+            List<double[]> expected = new ArrayList<>();
+            for (int i = 0; i < SHOPS; i++) {
+                double distance = GeoGrid.distance(x, y, xs[i], ys[i]);
+                if (distance <= RADIUS) {
+                    expected.add(new double[]{distance, i});
+                }
+            }
+            expected.sort(Comparator.comparingDouble(e -> e[0]));
+            int offset = q % 10 * PAGE_SIZE;
+            List<GeoGrid.Hit<Integer>> hits = grid.search(x, y, RADIUS, offset, PAGE_SIZE);
+            assertEquals(Math.max(0, Math.min(PAGE_SIZE, expected.size() - offset)), hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+                assertEquals(expected.get(offset + i)[0], hits.get(i).getDistance(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void benchmarkMemoryIndex() {
+        GeoGrid<Integer> grid = buildGrid();
+        Random random = new Random(3);
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += grid.search(MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN, RADIUS, 0, PAGE_SIZE).size();
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            // 翻到第1~10页
+            int offset = i % 10 * PAGE_SIZE;
+            sink += grid.search(MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN, RADIUS, offset, PAGE_SIZE).size();
+        }
+        long cost = System.nanoTime() - begin;
+        log.info("memory GeoGrid: shops={}, search={}ns/op, hits={}", SHOPS, cost / ITERATIONS, sink);
+    }
+
+    @Test
+    void benchmarkRedisGeo() {
+        LettuceConnectionFactory factory = connect();
+        assumeTrue(factory != null, "Redis不可用，跳过");
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        try {
+            Map<String, Point> members = new HashMap<>(SHOPS * 2);
+            for (int i = 0; i < SHOPS; i++) {
+                members.put(String.valueOf(i), new Point(xs[i], ys[i]));
+            }
+            template.opsForGeo().add(BENCHMARK_KEY, members);
+            Random random = new Random(3);
+            long sink = 0;
+            for (int i = 0; i < WARMUP / 10; i++) {
+                sink += redisSearch(template, MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN, PAGE_SIZE);
+            }
+            int iterations = ITERATIONS / 10;
+            long begin = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                // 与现有实现一样，每页都查询前offset + PAGE_SIZE个再截取
+                int to = i % 10 * PAGE_SIZE + PAGE_SIZE;
+                sink += redisSearch(template, MIN_X + random.nextDouble() * SPAN, MIN_Y + random.nextDouble() * SPAN, to);
+            }
+            long cost = System.nanoTime() - begin;
+            log.info("redis GEOSEARCH: shops={}, search={}ns/op, hits={}", SHOPS, cost / iterations, sink);
+        } finally {
+            template.delete(BENCHMARK_KEY);
+            factory.destroy();
+        }
+    }
+
+    private GeoGrid<Integer> buildGrid() {
+        GeoGrid<Integer> grid = new GeoGrid<>(0.01);
+        for (int i = 0; i < SHOPS; i++) {
+            grid.put(i, xs[i], ys[i], i);
+        }
+        return grid;
+    }
+
+    private static long redisSearch(StringRedisTemplate template, double x, double y, int limit) {
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = template.opsForGeo().search(BENCHMARK_KEY,
+                GeoReference.fromCoordinate(x, y), new Distance(RADIUS),
+                RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs().includeDistance().sortAscending().limit(limit));
+        return results == null ? 0 : results.getContent().size();
+    }
+
+    /**
+     * Redis连接信息：优先使用系统属性（-Dspring.redis.host=... -Dspring.redis.port=... -Dspring.redis.password=...），
+     * 否则读取application.yml中的spring.redis配置；都没有配置或连接不上时返回null
+     */
+    private static LettuceConnectionFactory connect() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties defaults = yaml.getObject();
+        Properties properties = defaults == null ? new Properties() : defaults;
+        String host = System.getProperty("spring.redis.host", properties.getProperty("spring.redis.host"));
+        if (host == null) {
+            return null;
+        }
+        int port = Integer.parseInt(System.getProperty("spring.redis.port", properties.getProperty("spring.redis.port", "6379")));
+        String password = System.getProperty("spring.redis.password", properties.getProperty("spring.redis.password"));
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(host, port);
+        if (password != null && !password.isEmpty()) {
+            configuration.setPassword(password);
+        }
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(configuration);
+        factory.afterPropertiesSet();
+        try (RedisConnection connection = factory.getConnection()) {
+            connection.ping();
+            return factory;
+        } catch (Exception e) {
+            factory.destroy();
+            return null;
+        }
+    }
+}
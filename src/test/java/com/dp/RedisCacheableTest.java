@@ -0,0 +1,73 @@
+package com.dp;
+
+import com.dp.dto.Result;
+import com.dp.entity.Shop;
+import com.dp.entity.Voucher;
+import com.dp.service.VoucherService;
+import com.dp.utils.redis.CacheRedisUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.dp.utils.redis.RedisConstants.CACHE_VOUCHER_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 注解缓存及其底层CacheRedisUtil的集成测试（需要MySQL和Redis）
+ */
+@SpringBootTest
+public class RedisCacheableTest {
+
+    @Resource
+    private CacheRedisUtil cacheRedisUtil;
+
+    @Resource
+    private VoucherService voucherService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 数据不存在时写入空值，且不会被null覆盖
+     */
+    @Test
+    void testPassThroughNullMarker() {
+        String keyPrefix = "test:cache:";
+        Long id = -1L;
+        stringRedisTemplate.delete(keyPrefix + id);
+        try {
+            Shop shop = cacheRedisUtil.queryWithPassThrough(keyPrefix, id, Shop.class, i -> null, 1L, TimeUnit.MINUTES);
+            assertNull(shop);
+            assertEquals("", stringRedisTemplate.opsForValue().get(keyPrefix + id));
+            // 命中空值，不再查询数据库
+            shop = cacheRedisUtil.queryWithPassThrough(keyPrefix, id, Shop.class, i -> {
+                throw new IllegalStateException("命中空值时不应查询数据库");
+            }, 1L, TimeUnit.MINUTES);
+            assertNull(shop);
+        } finally {
+            stringRedisTemplate.delete(keyPrefix + id);
+        }
+    }
+
+    /**
+     * 第二次查询命中缓存，并还原为与第一次相同类型的数据
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCacheableVoucherOfShop() {
+        Long shopId = 1L;
+        stringRedisTemplate.delete(CACHE_VOUCHER_SHOP_KEY + shopId);
+        Result first = voucherService.queryVoucherOfShop(shopId);
+        assertTrue(first.getSuccess());
+        assertNotNull(stringRedisTemplate.opsForValue().get(CACHE_VOUCHER_SHOP_KEY + shopId));
+        Result second = voucherService.queryVoucherOfShop(shopId);
+        List<Voucher> firstVouchers = (List<Voucher>) first.getData();
+        List<Voucher> secondVouchers = (List<Voucher>) second.getData();
+        assertEquals(firstVouchers, secondVouchers);
+        stringRedisTemplate.delete(CACHE_VOUCHER_SHOP_KEY + shopId);
+    }
+}
@@ -0,0 +1,162 @@
+package com.dp;
+
+import com.dp.dto.UserDTO;
+import com.dp.entity.Blog;
+import com.dp.entity.Shop;
+import com.dp.entity.ShopType;
+import com.dp.utils.codec.ValueCodec;
+import com.dp.utils.codec.ValueCodecs;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 缓存值编解码的基准测试：二进制格式与hutool JSON格式对比数据大小、编解码耗时和内存分配
+ * 不依赖Spring容器和Redis，可直接运行
+ */
+@Slf4j
+public class ValueCodecBenchmarkTest {
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    void benchmarkShop() {
+        Shop shop = new Shop()
+                .setId(1L)
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg")
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+        compare(Shop.class, shop);
+    }
+
+    @Test
+    void benchmarkShopType() {
+        ShopType shopType = new ShopType()
+                .setId(1L)
+                .setName("美食")
+                .setIcon("/types/ms.png")
+                .setSort(1)
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 20, 17, 47))
+                .setUpdateTime(LocalDateTime.of(2021, 12, 23, 11, 24, 31));
+        compare(ShopType.class, shopType);
+    }
+
+    @Test
+    void benchmarkBlog() {
+        Blog blog = new Blog()
+                .setId(4L)
+                .setShopId(4L)
+                .setUserId(2L)
+                .setTitle("无尽浪漫的夜晚丨在万花丛中摇晃着红酒杯🍷品战斧牛排🥩")
+                .setImages("/imgs/blogs/7/14/4771fefb-1a87-4252-816c-9f7ec41ffa4a.jpg,/imgs/blogs/4/10/2f07e3c9-ddce-482d-9ea7-c21450f8d7cd.jpg")
+                .setContent("生活就是一半烟火·一半诗意<br/>手执烟火谋生活·心怀诗意以谋爱·<br/>当然<br/>男朋友给不了的浪漫要学会自己给🍒")
+                .setLiked(1)
+                .setComments(104)
+                .setCreateTime(LocalDateTime.of(2021, 12, 28, 19, 50, 1))
+                .setUpdateTime(LocalDateTime.of(2022, 3, 10, 14, 26, 34));
+        compare(Blog.class, blog);
+    }
+
+    @Test
+    void benchmarkUserDTO() {
+        UserDTO user = new UserDTO();
+        user.setId(1010L);
+        user.setNickName("user_slxaxy2au9f3tanffaxr");
+        user.setIcon("/imgs/icons/kkjtbcr.jpg");
+        compare(UserDTO.class, user);
+    }
+
+    /**
+     * 二进制解码器兼容JSON格式的缓存值
+     */
+    @Test
+    void testShopDecodeJson() {
+        Shop shop = new Shop()
+                .setId(1L)
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setX(120.149192)
+                .setY(30.316078)
+                .setOpenHours("10:00-22:00");
+        ValueCodec<Shop> json = ValueCodecs.of(Shop.class, ValueCodecs.JSON);
+        ValueCodec<Shop> binary = ValueCodecs.of(Shop.class, ValueCodecs.BINARY);
+        assertEquals(shop, binary.decode(json.encode(shop)));
+    }
+
+    private <T> void compare(Class<T> type, T value) {
+        ValueCodec<T> json = ValueCodecs.of(type, ValueCodecs.JSON);
+        ValueCodec<T> binary = ValueCodecs.of(type, ValueCodecs.BINARY);
+        // 编码后再解码，结果与原对象相同
+        assertEquals(value, binary.decode(binary.encode(value)));
+        Result jsonResult = measure(json, value);
+        Result binaryResult = measure(binary, value);
+        log.info("{} json:   size={}B, encode={}ns/op, decode={}ns/op, alloc={}B/op",
+                type.getSimpleName(), jsonResult.size, jsonResult.encodeNs, jsonResult.decodeNs, jsonResult.allocBytes);
+        log.info("{} binary: size={}B, encode={}ns/op, decode={}ns/op, alloc={}B/op",
+                type.getSimpleName(), binaryResult.size, binaryResult.encodeNs, binaryResult.decodeNs, binaryResult.allocBytes);
+    }
+
+    private <T> Result measure(ValueCodec<T> codec, T value) {
+        byte[] bytes = codec.encode(value);
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += codec.encode(value).length;
+            sink += codec.decode(bytes).hashCode();
+        }
+        Result result = new Result();
+        result.size = bytes.length;
+        long allocBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += codec.encode(value).length;
+        }
+        long middle = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += codec.decode(bytes).hashCode();
+        }
+        long end = System.nanoTime();
+        long allocAfter = allocatedBytes();
+        result.encodeNs = (middle - begin) / ITERATIONS;
+        result.decodeNs = (end - middle) / ITERATIONS;
+        // 一次编码 + 一次解码的平均分配字节数
+        result.allocBytes = allocBefore < 0 ? -1 : (allocAfter - allocBefore) / ITERATIONS;
+        if (sink == 42) {
+            log.debug("sink: {}", sink);
+        }
+        return result;
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static class Result {
+        private int size;
+        private long encodeNs;
+        private long decodeNs;
+        private long allocBytes;
+    }
+}
@@ -0,0 +1,69 @@
+package com.dp.utils.index;
+
+import com.dp.entity.Shop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 附近商铺排序得分的单元测试（权重与application.yml中的默认值相同）
+ */
+public class ShopNearbySearcherTest {
+
+    private static final double RADIUS = 5000;
+    private static final double LOG_SOLD_NORMALIZER = Math.log1p(10000);
+    private static final double DELTA = 1e-9;
+
+    private final ShopNearbySearcher searcher = new ShopNearbySearcher();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(searcher, "distanceWeight", 0.5);
+        ReflectionTestUtils.setField(searcher, "scoreWeight", 0.3);
+        ReflectionTestUtils.setField(searcher, "soldWeight", 0.2);
+    }
+
+    @Test
+    void testRankBounds() {
+        // 距离为0、满分、销量达到归一化值时得分为权重之和
+        assertEquals(1.0, rank(shop(50, 10000), 0), DELTA);
+        // 半径边界、0分、无销量时得分为0
+        assertEquals(0.0, rank(shop(0, 0), RADIUS), DELTA);
+        // 超出归一化值的评分、销量不再加分
+        assertEquals(rank(shop(50, 10000), 100), rank(shop(60, 1000000), 100), DELTA);
+    }
+
+    @Test
+    void testRankOrdering() {
+        // 其他条件相同时，距离近、评分高、销量高的在前
+        assertTrue(rank(shop(40, 100), 100) > rank(shop(40, 100), 1000));
+        assertTrue(rank(shop(45, 100), 1000) > rank(shop(40, 100), 1000));
+        assertTrue(rank(shop(40, 1000), 1000) > rank(shop(40, 100), 1000));
+        // 距离权重最大：近处的普通商铺可以排在远处的高分商铺之前
+        assertTrue(rank(shop(30, 100), 0) > rank(shop(50, 100), 4000));
+    }
+
+    /**
+     * 销量取对数：爆款的销量得分不会线性压过其他商铺
+     */
+    @Test
+    void testSoldIsLogScaled() {
+        double base = rank(shop(0, 0), RADIUS);
+        double sold100 = rank(shop(0, 100), RADIUS) - base;
+        double sold1000 = rank(shop(0, 1000), RADIUS) - base;
+        assertEquals(0.2 * Math.log1p(100) / LOG_SOLD_NORMALIZER, sold100, DELTA);
+        assertTrue(sold1000 < sold100 * 10 / 2);
+        // 异常的负销量按0处理
+        assertEquals(base, rank(shop(0, -5), RADIUS), DELTA);
+    }
+
+    private double rank(ShopProjection shop, double distance) {
+        return searcher.rank(shop, distance, RADIUS, LOG_SOLD_NORMALIZER);
+    }
+
+    private static ShopProjection shop(int score, int sold) {
+        return new ShopProjection(new Shop().setId(1L).setAvgPrice(80L).setScore(score).setSold(sold));
+    }
+}
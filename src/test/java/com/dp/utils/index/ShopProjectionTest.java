@@ -0,0 +1,86 @@
+package com.dp.utils.index;
+
+import com.dp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 营业时间解析和是否营业判断的单元测试
+ */
+public class ShopProjectionTest {
+
+    @Test
+    void testParseOpenHours() {
+        assertArrayEquals(new int[]{600, 1320}, ShopProjection.parseOpenHours("10:00-22:00"));
+        assertArrayEquals(new int[]{600, 840, 1020, 120}, ShopProjection.parseOpenHours("10:00-14:00,17:00-02:00"));
+        // 全角符号、中文分隔符、多余空格
+        assertArrayEquals(new int[]{570, 1290}, ShopProjection.parseOpenHours(" 9：30至21:30 "));
+        assertArrayEquals(new int[]{600, 840, 1020, 1320}, ShopProjection.parseOpenHours("10:00~14:00；17:00～22:00"));
+        // 24:00即当天结束
+        assertArrayEquals(new int[]{0, 1440}, ShopProjection.parseOpenHours("00:00-24:00"));
+    }
+
+    @Test
+    void testParseInvalidOpenHours() {
+        assertNull(ShopProjection.parseOpenHours(null));
+        assertNull(ShopProjection.parseOpenHours(" "));
+        assertNull(ShopProjection.parseOpenHours("全天"));
+        assertNull(ShopProjection.parseOpenHours("10:00"));
+        assertNull(ShopProjection.parseOpenHours("10:00-25:00"));
+        assertNull(ShopProjection.parseOpenHours("10:60-22:00"));
+        assertNull(ShopProjection.parseOpenHours("10-22"));
+        // 有一段无法解析时整体无法解析
+        assertNull(ShopProjection.parseOpenHours("10:00-14:00,17:00"));
+    }
+
+    @Test
+    void testIsOpenAt() {
+        ShopProjection shop = projection("10:00-22:00");
+        assertFalse(shop.isOpenAt(9 * 60 + 59));
+        assertTrue(shop.isOpenAt(10 * 60));
+        assertTrue(shop.isOpenAt(21 * 60 + 59));
+        assertFalse(shop.isOpenAt(22 * 60));
+    }
+
+    /**
+     * 跨零点的营业时间：开始之后或结束之前都在营业
+     */
+    @Test
+    void testIsOpenAtOvernight() {
+        ShopProjection shop = projection("18:00-02:00");
+        assertFalse(shop.isOpenAt(17 * 60 + 59));
+        assertTrue(shop.isOpenAt(18 * 60));
+        assertTrue(shop.isOpenAt(23 * 60 + 59));
+        assertTrue(shop.isOpenAt(0));
+        assertTrue(shop.isOpenAt(60 + 59));
+        assertFalse(shop.isOpenAt(2 * 60));
+        assertFalse(shop.isOpenAt(12 * 60));
+    }
+
+    @Test
+    void testIsOpenAtSplitRanges() {
+        ShopProjection shop = projection("10:00-14:00,17:00-02:00");
+        assertTrue(shop.isOpenAt(11 * 60));
+        assertFalse(shop.isOpenAt(15 * 60));
+        assertTrue(shop.isOpenAt(20 * 60));
+        assertTrue(shop.isOpenAt(60));
+        assertFalse(shop.isOpenAt(3 * 60));
+    }
+
+    @Test
+    void testIsOpenAtAllDayAndUnknown() {
+        ShopProjection allDay = projection("00:00-24:00");
+        assertTrue(allDay.isOpenAt(0));
+        assertTrue(allDay.isOpenAt(24 * 60 - 1));
+        ShopProjection sameStartEnd = projection("00:00-00:00");
+        assertTrue(sameStartEnd.isOpenAt(12 * 60));
+        // 无法解析的营业时间视为不营业
+        assertFalse(projection("全天").isOpenAt(12 * 60));
+        assertFalse(projection(null).isOpenAt(12 * 60));
+    }
+
+    private static ShopProjection projection(String openHours) {
+        return new ShopProjection(new Shop().setId(1L).setOpenHours(openHours));
+    }
+}
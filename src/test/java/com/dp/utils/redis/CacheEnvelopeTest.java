@@ -0,0 +1,49 @@
+package com.dp.utils.redis;
+
+import com.dp.entity.Shop;
+import com.dp.utils.codec.ValueCodec;
+import com.dp.utils.codec.ValueCodecs;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 带过期信息的缓存值编解码测试（不需要Redis）
+ */
+public class CacheEnvelopeTest {
+
+    /**
+     * 头部字段原样读出，数据部分可直接按codec解码
+     */
+    @Test
+    void testRoundTrip() {
+        Shop shop = new Shop().setId(1L).setName("103茶餐厅").setTypeId(1L);
+        ValueCodec<Shop> codec = ValueCodecs.of(Shop.class, ValueCodecs.BINARY);
+        byte[] bytes = CacheEnvelope.encode(CacheEnvelope.LOGICAL_EXPIRE, 2000L, 1800L, codec.encode(shop));
+
+        CacheEnvelope envelope = CacheEnvelope.decode(CacheEnvelope.LOGICAL_EXPIRE, bytes);
+        assertNotNull(envelope);
+        assertEquals(2000L, envelope.expireAt());
+        assertEquals(1800L, envelope.extra());
+        assertEquals(shop, codec.decode(envelope.data()));
+    }
+
+    /**
+     * 旧的JSON格式、其他策略写入的数据和空值都读取为null
+     */
+    @Test
+    void testFormatMismatch() {
+        byte[] legacy = "{\"expireTime\":\"2022-01-01T00:00:00\",\"data\":{\"id\":1}}".getBytes(StandardCharsets.UTF_8);
+        assertNull(CacheEnvelope.decode(CacheEnvelope.LOGICAL_EXPIRE, legacy));
+        assertNull(CacheEnvelope.decode(CacheEnvelope.XFETCH, legacy));
+
+        byte[] xfetch = CacheEnvelope.encode(CacheEnvelope.XFETCH, 2000L, 5L, new byte[]{1});
+        assertNull(CacheEnvelope.decode(CacheEnvelope.LOGICAL_EXPIRE, xfetch));
+        assertNotNull(CacheEnvelope.decode(CacheEnvelope.XFETCH, xfetch));
+
+        assertNull(CacheEnvelope.decode(CacheEnvelope.XFETCH, new byte[0]));
+        assertNull(CacheEnvelope.decode(CacheEnvelope.XFETCH, null));
+    }
+}
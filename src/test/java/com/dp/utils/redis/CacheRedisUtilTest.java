@@ -0,0 +1,60 @@
+package com.dp.utils.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * XFetch提前重建概率的单元测试（不需要Redis）
+ */
+public class CacheRedisUtilTest {
+
+    /**
+     * 已过期时必定重建，random为0时未过期则不重建
+     */
+    @Test
+    void testRefreshBoundary() {
+        long now = 1_000_000L;
+        assertTrue(CacheRedisUtil.shouldRefreshEarly(now, now, 100L, 1.0, 0.0));
+        assertTrue(CacheRedisUtil.shouldRefreshEarly(now, now - 1, 100L, 1.0, 0.5));
+        assertFalse(CacheRedisUtil.shouldRefreshEarly(now, now + 1, 100L, 1.0, 0.0));
+    }
+
+    /**
+     * 距离过期还剩remaining毫秒时，提前重建的概率约为 exp(-remaining / (delta * beta))
+     */
+    @Test
+    void testRefreshProbability() {
+        long now = 1_000_000L;
+        long delta = 100L;
+        double beta = 1.0;
+        Random random = new Random(42);
+        int samples = 200_000;
+        for (long remaining : new long[]{0L, 50L, 100L, 300L, 1000L}) {
+            int refreshed = 0;
+            for (int i = 0; i < samples; i++) {
+                if (CacheRedisUtil.shouldRefreshEarly(now, now + remaining, delta, beta, random.nextDouble())) {
+                    refreshed++;
+                }
+            }
+            double expected = Math.exp(-(double) remaining / (delta * beta));
+            assertEquals(expected, (double) refreshed / samples, 0.01, "remaining=" + remaining);
+        }
+    }
+
+    /**
+     * 越接近过期、重建越慢、beta越大，提前重建的概率越大
+     */
+    @Test
+    void testRefreshProbabilityMonotonic() {
+        long now = 1_000_000L;
+        double u = 0.5;
+        // -ln(0.5) * delta * beta 约为 0.69 * delta * beta
+        assertFalse(CacheRedisUtil.shouldRefreshEarly(now, now + 100, 100L, 1.0, u));
+        assertTrue(CacheRedisUtil.shouldRefreshEarly(now, now + 60, 100L, 1.0, u));
+        assertTrue(CacheRedisUtil.shouldRefreshEarly(now, now + 100, 200L, 1.0, u));
+        assertTrue(CacheRedisUtil.shouldRefreshEarly(now, now + 100, 100L, 2.0, u));
+    }
+}
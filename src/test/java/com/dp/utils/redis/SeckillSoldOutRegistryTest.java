@@ -0,0 +1,83 @@
+package com.dp.utils.redis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.dp.utils.redis.RedisConstants.SECKILL_RESTOCK_CHANNEL;
+import static com.dp.utils.redis.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 本地售罄登记表的单元测试（Redis发布订阅使用mock）
+ */
+public class SeckillSoldOutRegistryTest {
+
+    private static final Long VOUCHER_ID = 10L;
+
+    private final SeckillSoldOutRegistry registry = new SeckillSoldOutRegistry();
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registry, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(registry, "ttlMillis", 200L);
+    }
+
+    @Test
+    void testMarkAndBroadcastOnce() {
+        long requestTime = System.currentTimeMillis();
+        registry.markSoldOut(VOUCHER_ID, requestTime);
+        registry.markSoldOut(VOUCHER_ID, requestTime);
+        assertTrue(registry.isSoldOut(VOUCHER_ID));
+        verify(stringRedisTemplate, times(1)).convertAndSend(SECKILL_SOLD_OUT_CHANNEL, VOUCHER_ID.toString());
+    }
+
+    /**
+     * 登记过期后重新经过脚本判断
+     */
+    @Test
+    void testMarkExpires() throws InterruptedException {
+        registry.markSoldOut(VOUCHER_ID, System.currentTimeMillis());
+        assertTrue(registry.isSoldOut(VOUCHER_ID));
+        Thread.sleep(250);
+        assertFalse(registry.isSoldOut(VOUCHER_ID));
+    }
+
+    /**
+     * 补库存之前开始的请求不再登记售罄
+     */
+    @Test
+    void testIgnoreMarkFromRequestBeforeRestock() throws InterruptedException {
+        long requestTime = System.currentTimeMillis();
+        Thread.sleep(5);
+        registry.clearSoldOut(VOUCHER_ID);
+        registry.markSoldOut(VOUCHER_ID, requestTime);
+        assertFalse(registry.isSoldOut(VOUCHER_ID));
+        verify(stringRedisTemplate, never()).convertAndSend(eq(SECKILL_SOLD_OUT_CHANNEL), anyString());
+        // 补库存之后开始的请求正常登记
+        Thread.sleep(5);
+        registry.markSoldOut(VOUCHER_ID, System.currentTimeMillis());
+        assertTrue(registry.isSoldOut(VOUCHER_ID));
+    }
+
+    @Test
+    void testBroadcastMessages() {
+        registry.onMessage(message(SECKILL_SOLD_OUT_CHANNEL, VOUCHER_ID.toString()), null);
+        assertTrue(registry.isSoldOut(VOUCHER_ID));
+        registry.onMessage(message(SECKILL_RESTOCK_CHANNEL, VOUCHER_ID.toString()), null);
+        assertFalse(registry.isSoldOut(VOUCHER_ID));
+        // 消息格式有误时忽略
+        registry.onMessage(message(SECKILL_SOLD_OUT_CHANNEL, "abc"), null);
+    }
+
+    private static DefaultMessage message(String channel, String body) {
+        return new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}